@@ -0,0 +1,169 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.objective.jni.benchmarks;
+
+import org.apache.commons.bcel6.classfile.JavaClass;
+import org.apache.commons.bcel6.classfile.Method;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.objective.jni.tasks.builders.ClassBuilder;
+import ru.objective.jni.utils.ClassMethodsInfo;
+import ru.objective.jni.utils.MethodExportInfo;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Method declaration and implementation generation, plus whole wrapper rendering.
+ * Each operation covers all exported methods of all classes of the state.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BuilderBenchmark {
+
+    /**
+     * Exposes per method generation of ClassBuilder.
+     */
+    public static class MethodsBuilder extends ClassBuilder {
+
+        private final Method[] methods;
+        private final ClassMethodsInfo methodsInfo;
+        private final int[] exported;
+
+        public MethodsBuilder(JavaClass javaClass, String prefix, String[] excludes, String[] excludedPackages) throws Exception {
+            super(javaClass, prefix, excludes, excludedPackages);
+
+            methods = javaClass.getMethods();
+            methodsInfo = new ClassMethodsInfo(methods);
+
+            ArrayList<Integer> indexes = new ArrayList<>();
+
+            for (int i = 0; i < methods.length; i++) {
+                if (methodsInfo.getExportInfo(i).name != null)
+                    indexes.add(i);
+            }
+
+            exported = new int[indexes.size()];
+
+            for (int i = 0; i < exported.length; i++) {
+                exported[i] = indexes.get(i);
+            }
+        }
+
+        String getDeclaration(int index) {
+            MethodExportInfo info = methodsInfo.getExportInfo(index);
+
+            return getHeaderDeclarationMethod(info, methods[index], methodsInfo.isOverloaded(index));
+        }
+
+        String getImplementation(int index, String declaration) {
+            return getMethodImplementation(methods[index], declaration);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Builders {
+
+        MethodsBuilder[] builders;
+        // declarations are computed once for implementation benchmark
+        String[][] declarations;
+
+        @Setup(Level.Trial)
+        public void setUp(ClassesState state) throws Exception {
+            ArrayList<MethodsBuilder> result = new ArrayList<>();
+
+            for (JavaClass javaClass : state.classes) {
+                if (!javaClass.isInterface())
+                    result.add(new MethodsBuilder(javaClass, ClassesState.PREFIX, state.excludes, state.excludedPackages));
+            }
+
+            builders = result.toArray(new MethodsBuilder[result.size()]);
+            declarations = new String[builders.length][];
+
+            for (int i = 0; i < builders.length; i++) {
+                MethodsBuilder builder = builders[i];
+
+                declarations[i] = new String[builder.exported.length];
+
+                for (int j = 0; j < builder.exported.length; j++) {
+                    declarations[i][j] = builder.getDeclaration(builder.exported[j]);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void headerDeclarationMethod(Builders state, Blackhole blackhole) {
+        for (MethodsBuilder builder : state.builders) {
+            for (int index : builder.exported) {
+                blackhole.consume(builder.getDeclaration(index));
+            }
+        }
+    }
+
+    @Benchmark
+    public void methodImplementation(Builders state, Blackhole blackhole) {
+        for (int i = 0; i < state.builders.length; i++) {
+            MethodsBuilder builder = state.builders[i];
+
+            for (int j = 0; j < builder.exported.length; j++) {
+                blackhole.consume(builder.getImplementation(builder.exported[j], state.declarations[i][j]));
+            }
+        }
+    }
+
+    @Benchmark
+    public void argumentString(Builders state, Blackhole blackhole) {
+        for (MethodsBuilder builder : state.builders) {
+            for (int index : builder.exported) {
+                blackhole.consume(builder.generateArgumentString(builder.methods[index]));
+            }
+        }
+    }
+
+    // header and implementation templates rendered with streamed blocks
+    @Benchmark
+    public void renderWrappers(Builders state, Blackhole blackhole) throws IOException {
+        StringBuilder output = new StringBuilder(65536);
+
+        for (MethodsBuilder builder : state.builders) {
+            output.setLength(0);
+
+            if (builder.hasHeader())
+                builder.writeHeader(output);
+
+            if (builder.hasImplementation())
+                builder.writeImplementation(output);
+
+            blackhole.consume(output.length());
+        }
+    }
+}
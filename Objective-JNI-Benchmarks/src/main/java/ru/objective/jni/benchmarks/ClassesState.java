@@ -0,0 +1,103 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.objective.jni.benchmarks;
+
+import org.apache.commons.bcel6.classfile.JavaClass;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import ru.objective.jni.utils.OJNIClassLoader;
+import ru.objective.jni.utils.Utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+/**
+ * Classes benchmarks run against: real JDK classes from system classpath
+ * or classes of synthetic jar put on OJNIClassLoader classpath.
+ */
+@State(Scope.Benchmark)
+public class ClassesState {
+
+    public static final String PREFIX = "OJ";
+
+    private static final String[] JDK_CLASSES = {
+            "java.lang.String", "java.lang.StringBuilder", "java.lang.Thread", "java.lang.Integer",
+            "java.util.ArrayList", "java.util.HashMap", "java.util.Properties", "java.util.Collections",
+            "java.util.concurrent.ConcurrentHashMap", "java.util.concurrent.ThreadPoolExecutor",
+            "java.io.File", "java.io.PrintStream", "java.net.URL", "java.math.BigDecimal"
+    };
+
+    private static final int SYNTHETIC_CLASSES = 200;
+    private static final int SYNTHETIC_METHODS = 20;
+
+    @Param({"jdk", "synthetic"})
+    public String source;
+
+    // rules of every kind matcher supports
+    public final String[] excludes = {"java.lang.Thread", "java.util.*Map", "regex:.*\\$Inner[0-9]+"};
+    public final String[] excludedPackages = {"sun", "java.awt", "synthetic.p1", "javax.**"};
+
+    public String[] classPaths;
+    public String[] classNames;
+    public JavaClass[] classes;
+
+    private Path jar;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        classPaths = new String[0];
+
+        if (source.equals("synthetic")) {
+            jar = Files.createTempFile("ojni-synthetic", ".jar");
+
+            SyntheticJar syntheticJar = new SyntheticJar(SYNTHETIC_CLASSES, SYNTHETIC_METHODS);
+            syntheticJar.write(jar);
+
+            classNames = syntheticJar.getClassNames().toArray(new String[0]);
+            classPaths = new String[] {jar.toString()};
+        } else {
+            classNames = JDK_CLASSES;
+        }
+
+        OJNIClassLoader.getInstance().setClassPaths(Utils.classPathsFromStrings(classPaths));
+
+        ArrayList<JavaClass> loaded = new ArrayList<>(classNames.length);
+
+        for (String className : classNames) {
+            JavaClass javaClass = OJNIClassLoader.getInstance().loadClass(className);
+
+            if (javaClass == null)
+                throw new IllegalStateException("Could not load " + className);
+
+            loaded.add(javaClass);
+        }
+
+        classes = loaded.toArray(new JavaClass[loaded.size()]);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (jar != null)
+            Files.deleteIfExists(jar);
+    }
+}
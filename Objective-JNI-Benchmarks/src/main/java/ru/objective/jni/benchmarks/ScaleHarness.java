@@ -0,0 +1,275 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.objective.jni.benchmarks;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import ru.objective.jni.Main;
+import ru.objective.jni.argparser.ArgumentParser;
+import ru.objective.jni.tasks.TaskManager;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Runs full generation pipeline over synthetic jars and reports one JSON object per run:
+ * wall time, classes per second, peak heap, GC time and bytes written.
+ * Results are appended to results file, so runs of different versions can be compared with --label.
+ *
+ * Runs share JVM, so later runs reuse interned types and JIT compiled code,
+ * run each scenario with --runs 1 in separate JVM for cold numbers.
+ * Arguments after -- are passed to generator, e.g. -- --amalgamate package
+ */
+public class ScaleHarness {
+
+    private static final Options OPTIONS = new Options();
+
+    // name -> classes, methods per class, hierarchy depth, overloads, fan out
+    private static final LinkedHashMap<String, int[]> SCENARIOS = new LinkedHashMap<>();
+
+    static {
+        SCENARIOS.put("wide", new int[] {10000, 10, 4, 2, 1});
+        SCENARIOS.put("deep", new int[] {2000, 10, 1000, 2, 1});
+        SCENARIOS.put("overloaded", new int[] {1000, 64, 4, 16, 1});
+        SCENARIOS.put("fanout", new int[] {2000, 20, 4, 2, 32});
+
+        OPTIONS.addOption("help", "help", false, "Print this message");
+        OPTIONS.addOption("scenario", "scenario", true, "Predefined shape: " + SCENARIOS.keySet() +
+                " or custom, can be repeated. Defaults to all predefined.");
+        OPTIONS.addOption("classes", "classes", true, "Classes count of custom scenario");
+        OPTIONS.addOption("methods", "methods", true, "Methods per class of custom scenario");
+        OPTIONS.addOption("depth", "depth", true, "Inheritance chain length of custom scenario");
+        OPTIONS.addOption("overloads", "overloads", true, "Methods per overloaded name of custom scenario");
+        OPTIONS.addOption("fanout", "fanout", true, "Dependencies per class of custom scenario");
+        OPTIONS.addOption("runs", "runs", true, "Runs per scenario, defaults to 3");
+        OPTIONS.addOption("threads", "threads", true, "Generator threads, defaults to the number of available processors");
+        OPTIONS.addOption("work", "work", true, "Dir for synthetic jars and output, defaults to temporary dir");
+        OPTIONS.addOption("results", "results", true, "File to append JSON results to, defaults to standard output");
+        OPTIONS.addOption("label", "label", true, "Label stored with results, e.g. version under test");
+    }
+
+    private static class Result {
+        final LinkedHashMap<String, Object> values = new LinkedHashMap<>();
+
+        Result put(String key, Object value) {
+            values.put(key, value);
+            return this;
+        }
+
+        String toJson() {
+            StringBuilder json = new StringBuilder("{");
+
+            for (Map.Entry<String, Object> entry : values.entrySet()) {
+                if (json.length() > 1)
+                    json.append(", ");
+
+                json.append(quote(entry.getKey())).append(": ");
+
+                Object value = entry.getValue();
+
+                if (value instanceof Number)
+                    json.append(value);
+                else
+                    json.append(value == null ? "null" : quote(value.toString()));
+            }
+
+            return json.append("}").toString();
+        }
+
+        private static String quote(String value) {
+            StringBuilder result = new StringBuilder("\"");
+
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+
+                if (c == '"' || c == '\\')
+                    result.append('\\').append(c);
+                else if (c < 0x20)
+                    result.append(String.format("\\u%04x", (int)c));
+                else
+                    result.append(c);
+            }
+
+            return result.append('"').toString();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLine cmd = new DefaultParser().parse(OPTIONS, args);
+
+        if (cmd.hasOption("help")) {
+            new HelpFormatter().printHelp("ScaleHarness [options] [-- generator options]", OPTIONS);
+            return;
+        }
+
+        String[] scenarios = cmd.getOptionValues("scenario");
+
+        if (scenarios == null)
+            scenarios = SCENARIOS.keySet().toArray(new String[SCENARIOS.size()]);
+
+        int runs = Integer.parseInt(cmd.getOptionValue("runs", "3"));
+        String threads = cmd.getOptionValue("threads", String.valueOf(Runtime.getRuntime().availableProcessors()));
+        String label = cmd.getOptionValue("label", Main.class.getPackage().getImplementationVersion());
+
+        Path work = (cmd.hasOption("work") ? Paths.get(cmd.getOptionValue("work")) : Files.createTempDirectory("ojni-scale"));
+        Path results = (cmd.hasOption("results") ? Paths.get(cmd.getOptionValue("results")) : null);
+
+        for (String scenario : scenarios) {
+            int[] shape = getShape(scenario, cmd);
+
+            Path jar = work.resolve(scenario + ".jar");
+
+            System.out.println("Generating synthetic jar " + jar + " " + Arrays.toString(shape));
+
+            new SyntheticJar(shape[0], shape[1], shape[2], shape[3], shape[4]).write(jar);
+
+            for (int run = 1; run <= runs; run++) {
+                Path output = work.resolve(scenario + "-out");
+
+                FileUtils.deleteDirectory(output.toFile());
+
+                ArrayList<String> generatorArgs = new ArrayList<>(Arrays.asList("--classpath", jar.toString(),
+                        "--output", output.toString(), "--prefix", "SY", "--threads", threads));
+                Collections.addAll(generatorArgs, cmd.getArgs());
+
+                Result result = new Result()
+                        .put("label", label)
+                        .put("scenario", scenario)
+                        .put("run", run)
+                        .put("classes", shape[0])
+                        .put("methods", shape[1])
+                        .put("depth", shape[2])
+                        .put("overloads", shape[3])
+                        .put("fanout", shape[4])
+                        .put("threads", Integer.parseInt(threads))
+                        .put("java", System.getProperty("java.version"));
+
+                measure(generatorArgs.toArray(new String[generatorArgs.size()]), output, result);
+
+                String json = result.toJson();
+
+                if (results != null) {
+                    Files.write(results, Collections.singletonList(json), StandardCharsets.UTF_8,
+                            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                }
+
+                System.out.println(json);
+            }
+        }
+    }
+
+    private static int[] getShape(String scenario, CommandLine cmd) {
+        int[] shape = SCENARIOS.get(scenario);
+
+        if (shape != null)
+            return shape;
+
+        if (!scenario.equals("custom"))
+            throw new IllegalArgumentException("Unknown scenario " + scenario + ", expected one of " +
+                    SCENARIOS.keySet() + " or custom");
+
+        return new int[] {
+                Integer.parseInt(cmd.getOptionValue("classes", "1000")),
+                Integer.parseInt(cmd.getOptionValue("methods", "20")),
+                Integer.parseInt(cmd.getOptionValue("depth", "4")),
+                Integer.parseInt(cmd.getOptionValue("overloads", "2")),
+                Integer.parseInt(cmd.getOptionValue("fanout", "1"))
+        };
+    }
+
+    private static void measure(String[] generatorArgs, Path output, Result result) throws Exception {
+        System.gc();
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+
+        long gcTime = getGcTime();
+        long gcCount = getGcCount();
+
+        // generator progress is not part of results
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(NullOutputStream.NULL_OUTPUT_STREAM));
+
+        long start = System.nanoTime();
+
+        try {
+            new TaskManager().run(new ArgumentParser(generatorArgs).parse());
+        } finally {
+            System.setOut(out);
+        }
+
+        long wallNanos = System.nanoTime() - start;
+
+        long peakHeap = 0;
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP)
+                peakHeap += pool.getPeakUsage().getUsed();
+        }
+
+        File outputDir = output.toFile();
+        int wrappers = FileUtils.listFiles(outputDir, new String[] {"h"}, true).size();
+
+        result.put("wallMillis", wallNanos / 1000000)
+                .put("wrappers", wrappers)
+                .put("classesPerSecond", Math.round(wrappers * 1e9 / wallNanos))
+                .put("peakHeapBytes", peakHeap)
+                .put("gcMillis", getGcTime() - gcTime)
+                .put("gcCount", getGcCount() - gcCount)
+                .put("filesWritten", FileUtils.listFiles(outputDir, null, true).size())
+                .put("bytesWritten", FileUtils.sizeOfDirectory(outputDir));
+    }
+
+    private static long getGcTime() {
+        long result = 0;
+
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            result += Math.max(0, collector.getCollectionTime());
+        }
+
+        return result;
+    }
+
+    private static long getGcCount() {
+        long result = 0;
+
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            result += Math.max(0, collector.getCollectionCount());
+        }
+
+        return result;
+    }
+}
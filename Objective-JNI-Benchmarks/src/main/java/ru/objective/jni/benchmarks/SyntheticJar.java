@@ -0,0 +1,240 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.objective.jni.benchmarks;
+
+import org.apache.commons.bcel6.generic.ArrayType;
+import org.apache.commons.bcel6.generic.ClassGen;
+import org.apache.commons.bcel6.generic.ConstantPoolGen;
+import org.apache.commons.bcel6.generic.FieldGen;
+import org.apache.commons.bcel6.generic.MethodGen;
+import org.apache.commons.bcel6.generic.ObjectType;
+import org.apache.commons.bcel6.generic.Type;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Writes jar of generated classes shaped like real libraries: packages of classes with
+ * inheritance chains, interfaces, fields and overloaded methods over primitives, arrays and other classes.
+ * Shape is configurable: classes count, methods per class, inheritance chain length,
+ * methods per overloaded name and number of other classes each class depends on.
+ * The same arguments always give the same jar.
+ */
+public class SyntheticJar {
+
+    public static final String PACKAGE_PREFIX = "synthetic.p";
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+    private static final int ACC_NATIVE = 0x0100;
+    private static final int ACC_INTERFACE = 0x0200;
+    private static final int ACC_ABSTRACT = 0x0400;
+
+    private static final int CLASSES_PER_PACKAGE = 50;
+    private static final int INTERFACES_PER_PACKAGE = 5;
+
+    private static final Type[] PRIMITIVES = {
+            Type.INT, Type.LONG, Type.BOOLEAN, Type.DOUBLE, Type.FLOAT, Type.SHORT, Type.BYTE, Type.CHAR
+    };
+
+    private final int classCount;
+    private final int methodsPerClass;
+    private final int hierarchyDepth;
+    private final int overloads;
+    private final int fanOut;
+
+    private final ArrayList<String> classNames = new ArrayList<>();
+
+    public SyntheticJar(int classCount, int methodsPerClass) {
+        this(classCount, methodsPerClass, 4, 2, 1);
+    }
+
+    /**
+     * @param hierarchyDepth classes in each inheritance chain, chain starts from java.lang.Object
+     * @param overloads methods sharing the same name and arguments count
+     * @param fanOut other synthetic classes used by fields and methods of each class
+     */
+    public SyntheticJar(int classCount, int methodsPerClass, int hierarchyDepth, int overloads, int fanOut) {
+        if (classCount < 1 || methodsPerClass < 0 || hierarchyDepth < 1 || overloads < 1 || fanOut < 1)
+            throw new IllegalArgumentException("Invalid synthetic jar shape");
+
+        this.classCount = classCount;
+        this.methodsPerClass = methodsPerClass;
+        this.hierarchyDepth = hierarchyDepth;
+        this.overloads = overloads;
+        this.fanOut = fanOut;
+    }
+
+    /**
+     * Dotted names of generated classes, interfaces are not included.
+     */
+    public ArrayList<String> getClassNames() {
+        return classNames;
+    }
+
+    public static String getClassName(int index) {
+        return PACKAGE_PREFIX + (index / CLASSES_PER_PACKAGE) + ".Type" + index;
+    }
+
+    private static String getInterfaceName(int classIndex) {
+        return PACKAGE_PREFIX + (classIndex / CLASSES_PER_PACKAGE) + ".Api" + (classIndex % INTERFACES_PER_PACKAGE);
+    }
+
+    public Path write(Path jar) throws IOException {
+        classNames.clear();
+
+        Path parent = jar.toAbsolutePath().getParent();
+
+        if (parent != null)
+            Files.createDirectories(parent);
+
+        try (JarOutputStream output = new JarOutputStream(Files.newOutputStream(jar))) {
+            for (int i = 0; i < classCount; i++) {
+                if (i % CLASSES_PER_PACKAGE < INTERFACES_PER_PACKAGE)
+                    putClass(output, createInterface(getInterfaceName(i)));
+
+                putClass(output, createClass(i));
+
+                classNames.add(getClassName(i));
+            }
+        }
+
+        return jar;
+    }
+
+    private static void putClass(JarOutputStream output, ClassGen classGen) throws IOException {
+        output.putNextEntry(new JarEntry(classGen.getClassName().replace('.', '/') + ".class"));
+
+        output.write(classGen.getJavaClass().getBytes());
+
+        output.closeEntry();
+    }
+
+    private ClassGen createInterface(String name) {
+        ClassGen classGen = new ClassGen(name, "java.lang.Object", name + ".java",
+                ACC_PUBLIC | ACC_INTERFACE | ACC_ABSTRACT, null);
+
+        for (int i = 0; i < 3; i++) {
+            addMethod(classGen, "api" + i, Type.VOID, new Type[] {PRIMITIVES[i], Type.STRING},
+                    ACC_PUBLIC | ACC_ABSTRACT);
+        }
+
+        return classGen;
+    }
+
+    private ClassGen createClass(int index) {
+        String name = getClassName(index);
+        String superName = (index % hierarchyDepth == 0 ? "java.lang.Object" : getClassName(index - 1));
+
+        ClassGen classGen = new ClassGen(name, superName, name + ".java", ACC_PUBLIC | ACC_SUPER,
+                new String[] {getInterfaceName(index)});
+
+        classGen.addEmptyConstructor(ACC_PUBLIC);
+
+        ConstantPoolGen constants = classGen.getConstantPool();
+
+        Type[] related = new Type[fanOut];
+
+        for (int i = 0; i < fanOut; i++) {
+            related[i] = new ObjectType(getClassName((int)(((long)index * 7 + 3 + i * 13L) % classCount)));
+
+            classGen.addField(new FieldGen(ACC_PUBLIC, related[i], "related" + i, constants).getField());
+        }
+
+        classGen.addField(new FieldGen(ACC_PUBLIC, Type.INT, "count" + index, constants).getField());
+        classGen.addField(new FieldGen(ACC_PUBLIC | ACC_FINAL, Type.STRING, "NAME", constants).getField());
+        classGen.addField(new FieldGen(ACC_PUBLIC | ACC_STATIC, new ArrayType(Type.LONG, 2), "table", constants).getField());
+
+        for (int i = 0; i < 3; i++) {
+            addMethod(classGen, "api" + i, Type.VOID, new Type[] {PRIMITIVES[i], Type.STRING}, ACC_PUBLIC | ACC_NATIVE);
+        }
+
+        for (int i = 0; i < methodsPerClass; i++) {
+            // methods of one group share name and arguments count, differ by argument type
+            int group = i / overloads;
+            int member = i % overloads;
+
+            String methodName = "method" + group;
+            Type other = related[group % fanOut];
+
+            Type variant = PRIMITIVES[(index + member) % PRIMITIVES.length];
+
+            if (member >= PRIMITIVES.length)
+                variant = new ArrayType(variant, member / PRIMITIVES.length);
+
+            Type[] arguments;
+            Type returnType;
+
+            switch (group % 3) {
+                case 0:
+                    arguments = new Type[] {variant, Type.STRING};
+                    returnType = Type.VOID;
+                    break;
+                case 1:
+                    arguments = new Type[] {other, new ArrayType(Type.STRING, 2), variant};
+                    returnType = new ArrayType(other, 1);
+                    break;
+                default:
+                    arguments = new Type[] {new ObjectType("java.util.List"), variant};
+                    returnType = other;
+                    break;
+            }
+
+            int flags = ACC_PUBLIC | ACC_NATIVE | (i % 5 == 4 ? ACC_STATIC : 0);
+
+            addMethod(classGen, methodName, returnType, arguments, flags);
+        }
+
+        return classGen;
+    }
+
+    // methods are native or abstract, so no code is generated
+    private static void addMethod(ClassGen classGen, String name, Type returnType, Type[] arguments, int flags) {
+        String[] argumentNames = new String[arguments.length];
+
+        for (int i = 0; i < argumentNames.length; i++) {
+            argumentNames[i] = "arg" + i;
+        }
+
+        MethodGen method = new MethodGen(flags, returnType, arguments,
+                argumentNames, name, classGen.getClassName(), null, classGen.getConstantPool());
+
+        classGen.addMethod(method.getMethod());
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: SyntheticJar <jar> <classes> [methods per class] [hierarchy depth] [overloads] [fan out]");
+            return;
+        }
+
+        int[] shape = {20, 4, 2, 1};
+
+        for (int i = 2; i < args.length && i < shape.length + 2; i++) {
+            shape[i - 2] = Integer.parseInt(args[i]);
+        }
+
+        new SyntheticJar(Integer.parseInt(args[1]), shape[0], shape[1], shape[2], shape[3]).write(Paths.get(args[0]));
+    }
+}
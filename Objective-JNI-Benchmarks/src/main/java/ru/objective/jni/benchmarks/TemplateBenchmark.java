@@ -0,0 +1,93 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.objective.jni.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.objective.jni.constants.Constants;
+import ru.objective.jni.utils.Template;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering of wrapper templates with plain string values of given size.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TemplateBenchmark {
+
+    @Param({"256", "16384"})
+    public int blockSize;
+
+    private Template header;
+    private Template implementation;
+
+    private final HashMap<String, Object> values = new HashMap<>();
+    private final StringBuilder output = new StringBuilder();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        header = Template.getResourceTemplate(Constants.TEMPLATE_HEADER_FILENAME);
+        implementation = Template.getResourceTemplate(Constants.TEMPLATE_IMPLEMENTATION_FILENAME);
+
+        StringBuilder block = new StringBuilder(blockSize);
+
+        while (block.length() < blockSize) {
+            block.append("- (int)methodWithArg:(int)arg;").append(System.lineSeparator());
+        }
+
+        values.put(Constants.CLASS_NAME, "OJHashMap");
+        values.put(Constants.SUPERCLASS_NAME, "OJAbstractMap");
+        values.put(Constants.INTERFACES_IMPLEMENTS, " <OJMap, OJCloneable>");
+        values.put(Constants.IMPORT_BLOCK, "#import \"OJAbstractMap.h\"" + System.lineSeparator());
+        values.put(Constants.DEALLOC_BLOCK, "");
+        values.put(Constants.DECLARATION_BLOCK, block.toString());
+        values.put(Constants.IMPLEMENTATION_BLOCK, block.toString());
+    }
+
+    @Benchmark
+    public int renderHeader() throws IOException {
+        output.setLength(0);
+        header.render(output, values);
+
+        return output.length();
+    }
+
+    @Benchmark
+    public int renderImplementation() throws IOException {
+        output.setLength(0);
+        implementation.render(output, values);
+
+        return output.length();
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.objective.jni.benchmarks;
+
+import org.apache.commons.bcel6.classfile.JavaClass;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.objective.jni.utils.ClassMethodsInfo;
+import ru.objective.jni.utils.OJNIClassLoader;
+import ru.objective.jni.utils.Utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per class checks made for every class and dependency during generation.
+ * Each operation covers all classes of the state.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UtilsBenchmark {
+
+    // export info and overloads of all methods, replaces former Utils.getOverloadedMethods
+    @Benchmark
+    public void methodsInfo(ClassesState state, Blackhole blackhole) {
+        for (JavaClass javaClass : state.classes) {
+            blackhole.consume(new ClassMethodsInfo(javaClass.getMethods()));
+        }
+    }
+
+    @Benchmark
+    public void isExportClass(ClassesState state, Blackhole blackhole) {
+        for (JavaClass javaClass : state.classes) {
+            blackhole.consume(Utils.isExportClass(javaClass, state.excludes, state.excludedPackages));
+        }
+    }
+
+    @Benchmark
+    public void isClassNameExcluded(ClassesState state, Blackhole blackhole) {
+        for (JavaClass javaClass : state.classes) {
+            blackhole.consume(Utils.isClassNameExcluded(javaClass.getClassName(), state.excludes, state.excludedPackages));
+            blackhole.consume(Utils.isClassNameExcluded(javaClass.getSuperclassName(), state.excludes, state.excludedPackages));
+        }
+    }
+
+    // repeated lookups as made for dependencies, served from loader cache
+    @Benchmark
+    public void loadClass(ClassesState state, Blackhole blackhole) {
+        OJNIClassLoader loader = OJNIClassLoader.getInstance();
+
+        for (String className : state.classNames) {
+            blackhole.consume(loader.loadClass(className));
+        }
+    }
+
+    // classpath reset drops loader caches, so classes are parsed again along with classpath index
+    @Benchmark
+    public void loadClassUncached(ClassesState state, Blackhole blackhole) {
+        OJNIClassLoader loader = OJNIClassLoader.getInstance();
+
+        loader.setClassPaths(Utils.classPathsFromStrings(state.classPaths));
+
+        for (String className : state.classNames) {
+            blackhole.consume(loader.loadClass(className));
+        }
+    }
+}
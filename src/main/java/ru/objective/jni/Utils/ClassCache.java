@@ -0,0 +1,301 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.objective.jni.utils;
+
+import org.apache.commons.bcel6.classfile.JavaClass;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Parsed classes and class headers of all repositories within memory budget,
+ * least recently used entries are evicted first.
+ * Evicted class is parsed again from its classpath on next request.
+ *
+ * Budget is checked against estimated heap size of entries, derived from their class file sizes.
+ * Classes are still kept while they are referenced outside of cache, e.g. by builders.
+ *
+ * Entries are spread over segments with their own locks and equal shares of budget,
+ * so generator threads rarely wait for each other and eviction order is kept per segment.
+ */
+public class ClassCache {
+
+    // parsed JavaClass takes 3-5 times its class file size on heap
+    private static final int HEAP_BYTES_PER_CLASS_FILE_BYTE = 4;
+
+    // ClassFileInfo object, its interfaces array and strings headers
+    private static final int CLASS_INFO_BASE_SIZE = 128;
+
+    private static final int DEFAULT_SEGMENTS_COUNT = 16;
+
+    private static final class Key {
+        final Object owner;
+        final String className;
+
+        Key(Object owner, String className) {
+            this.owner = owner;
+            this.className = className;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key))
+                return false;
+
+            Key other = (Key)obj;
+
+            return owner == other.owner && className.equals(other.className);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(owner) + className.hashCode();
+        }
+    }
+
+    private static final class Entry {
+        // JavaClass or ClassFileInfo
+        final Object value;
+        final long size;
+
+        Entry(Object value, long size) {
+            this.value = value;
+            this.size = size;
+        }
+    }
+
+    private static final class Segment {
+        // access ordered, eldest entry is least recently used
+        private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+
+        private long maxSize = Long.MAX_VALUE;
+        private long size;
+
+        synchronized void setMaxSize(long maxSize) {
+            this.maxSize = maxSize;
+
+            evict();
+        }
+
+        synchronized long getSize() {
+            return size;
+        }
+
+        synchronized int getCount() {
+            return entries.size();
+        }
+
+        synchronized Object get(Key key) {
+            Entry entry = entries.get(key);
+
+            return (entry != null ? entry.value : null);
+        }
+
+        synchronized Object putIfAbsent(Key key, Entry entry) {
+            Entry previous = entries.get(key);
+
+            if (previous != null)
+                return previous.value;
+
+            entries.put(key, entry);
+            size += entry.size;
+
+            evict();
+
+            return entry.value;
+        }
+
+        synchronized void remove(Key key) {
+            Entry entry = entries.remove(key);
+
+            if (entry != null)
+                size -= entry.size;
+        }
+
+        synchronized void removeAll(Object owner) {
+            Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+
+            while (iterator.hasNext()) {
+                Map.Entry<Key, Entry> entry = iterator.next();
+
+                if (entry.getKey().owner == owner) {
+                    size -= entry.getValue().size;
+                    iterator.remove();
+                }
+            }
+        }
+
+        private void evict() {
+            Iterator<Entry> iterator = entries.values().iterator();
+
+            // the last stored entry is kept even if it does not fit alone
+            while (size > maxSize && entries.size() > 1) {
+                Entry eldest = iterator.next();
+
+                size -= eldest.size;
+                iterator.remove();
+
+                GenerationStats.increment(GenerationStats.Counter.CLASSES_EVICTED);
+            }
+        }
+    }
+
+    private final Segment[] segments;
+
+    private volatile long maxSize = Long.MAX_VALUE;
+
+    public ClassCache() {
+        this(DEFAULT_SEGMENTS_COUNT);
+    }
+
+    ClassCache(int segmentsCount) {
+        segments = new Segment[segmentsCount];
+
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    private Segment getSegment(Key key) {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16);
+
+        return segments[(hash & 0x7fffffff) % segments.length];
+    }
+
+    /**
+     * Sets budget in bytes, Long.MAX_VALUE keeps all classes.
+     */
+    public synchronized void setMaxSize(long maxSize) {
+        if (maxSize <= 0)
+            throw new IllegalArgumentException("Class cache size should be positive");
+
+        this.maxSize = maxSize;
+
+        long segmentMaxSize = (maxSize == Long.MAX_VALUE ? Long.MAX_VALUE : Math.max(1, maxSize / segments.length));
+
+        for (Segment segment : segments) {
+            segment.setMaxSize(segmentMaxSize);
+        }
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public long getSize() {
+        long result = 0;
+
+        for (Segment segment : segments) {
+            result += segment.getSize();
+        }
+
+        return result;
+    }
+
+    public int getCount() {
+        int result = 0;
+
+        for (Segment segment : segments) {
+            result += segment.getCount();
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns class loaded by owner repository or null.
+     */
+    public JavaClass get(Object owner, String className) {
+        Key key = new Key(owner, className);
+        JavaClass result = (JavaClass)getSegment(key).get(key);
+
+        if (result == null)
+            GenerationStats.increment(GenerationStats.Counter.CLASS_CACHE_MISSES);
+        else
+            GenerationStats.increment(GenerationStats.Counter.CLASS_CACHE_HITS);
+
+        return result;
+    }
+
+    /**
+     * Stores class unless another thread stored it first, returns the stored one.
+     */
+    public JavaClass putIfAbsent(Object owner, String className, JavaClass javaClass, long classFileSize) {
+        Key key = new Key(owner, className);
+
+        return (JavaClass)getSegment(key).putIfAbsent(key,
+                new Entry(javaClass, classFileSize * HEAP_BYTES_PER_CLASS_FILE_BYTE));
+    }
+
+    public void put(Object owner, String className, JavaClass javaClass, long classFileSize) {
+        Key key = new Key(owner, className);
+        Segment segment = getSegment(key);
+
+        synchronized (segment) {
+            segment.remove(key);
+            segment.putIfAbsent(key, new Entry(javaClass, classFileSize * HEAP_BYTES_PER_CLASS_FILE_BYTE));
+        }
+    }
+
+    /**
+     * Returns class header read by owner loader or null, hits and misses are counted by loader.
+     */
+    public ClassFileInfo getInfo(Object owner, String className) {
+        Key key = new Key(owner, className);
+
+        return (ClassFileInfo)getSegment(key).get(key);
+    }
+
+    /**
+     * Stores class header unless another thread stored it first, returns the stored one.
+     */
+    public ClassFileInfo putInfoIfAbsent(Object owner, String className, ClassFileInfo info) {
+        Key key = new Key(owner, className);
+
+        return (ClassFileInfo)getSegment(key).putIfAbsent(key, new Entry(info, getEstimatedSize(info)));
+    }
+
+    private static long getEstimatedSize(ClassFileInfo info) {
+        long chars = info.getClassName().length();
+
+        if (info.getSuperclassName() != null)
+            chars += info.getSuperclassName().length();
+
+        for (String interfaceName : info.getInterfaceNames()) {
+            chars += interfaceName.length();
+        }
+
+        return CLASS_INFO_BASE_SIZE + 2 * chars;
+    }
+
+    public void remove(Object owner, String className) {
+        Key key = new Key(owner, className);
+
+        getSegment(key).remove(key);
+    }
+
+    /**
+     * Removes all classes and headers of owner.
+     */
+    public void removeAll(Object owner) {
+        for (Segment segment : segments) {
+            segment.removeAll(owner);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.objective.jni.utils;
+
+/**
+ * Lightweight class file model produced by ClassFileReader.
+ * Keeps only what export filtering needs: header, superclass, interfaces and nesting,
+ * members and their attributes are never loaded.
+ */
+public class ClassFileInfo {
+
+    public static final int ACC_INTERFACE = 0x0200;
+    public static final int ACC_SYNTHETIC = 0x1000;
+    public static final int ACC_ANNOTATION = 0x2000;
+
+    private final int accessFlags;
+    private final String className;
+    private final String superclassName;
+    private final String[] interfaceNames;
+    private final boolean nested;
+    private final boolean anonymous;
+
+    public ClassFileInfo(int accessFlags, String className, String superclassName, String[] interfaceNames,
+                         boolean nested, boolean anonymous) {
+        this.accessFlags = accessFlags;
+        this.className = className;
+        this.superclassName = superclassName;
+        this.interfaceNames = interfaceNames;
+        this.nested = nested;
+        this.anonymous = anonymous;
+    }
+
+    public int getAccessFlags() {
+        return accessFlags;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    /**
+     * Dotted superclass name or null for java.lang.Object.
+     */
+    public String getSuperclassName() {
+        return superclassName;
+    }
+
+    public String[] getInterfaceNames() {
+        return interfaceNames;
+    }
+
+    public boolean isInterface() {
+        return (accessFlags & ACC_INTERFACE) != 0;
+    }
+
+    public boolean isAnnotation() {
+        return (accessFlags & ACC_ANNOTATION) != 0;
+    }
+
+    public boolean isSynthetic() {
+        return (accessFlags & ACC_SYNTHETIC) != 0;
+    }
+
+    public boolean isNested() {
+        return nested;
+    }
+
+    public boolean isAnonymous() {
+        return anonymous;
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.objective.jni.utils;
+
+import ru.objective.jni.exceptions.BadParsingException;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads ClassFileInfo from class file.
+ * Parses utf8 and class entries of constant pool, header and InnerClasses attribute,
+ * fields, methods and all other attributes are skipped without parsing.
+ */
+public class ClassFileReader {
+
+    static final int MAGIC = 0xCAFEBABE;
+
+    static final int CONSTANT_UTF8 = 1;
+    static final int CONSTANT_INTEGER = 3;
+    static final int CONSTANT_FLOAT = 4;
+    static final int CONSTANT_LONG = 5;
+    static final int CONSTANT_DOUBLE = 6;
+    static final int CONSTANT_CLASS = 7;
+    static final int CONSTANT_STRING = 8;
+    static final int CONSTANT_FIELDREF = 9;
+    static final int CONSTANT_METHODREF = 10;
+    static final int CONSTANT_INTERFACE_METHODREF = 11;
+    static final int CONSTANT_NAME_AND_TYPE = 12;
+    static final int CONSTANT_METHOD_HANDLE = 15;
+    static final int CONSTANT_METHOD_TYPE = 16;
+    static final int CONSTANT_DYNAMIC = 17;
+    static final int CONSTANT_INVOKE_DYNAMIC = 18;
+    static final int CONSTANT_MODULE = 19;
+    static final int CONSTANT_PACKAGE = 20;
+
+    private static final String ATTRIBUTE_INNER_CLASSES = "InnerClasses";
+
+    private final DataInputStream input;
+
+    // utf8 constants by index, class entries keep index of their name
+    private String[] utf8Constants;
+    private int[] classNameIndexes;
+
+    private ClassFileReader(InputStream stream) {
+        this.input = new DataInputStream(new BufferedInputStream(stream));
+    }
+
+    public static ClassFileInfo read(InputStream stream) throws IOException, BadParsingException {
+        return new ClassFileReader(stream).read();
+    }
+
+    private ClassFileInfo read() throws IOException, BadParsingException {
+        if (input.readInt() != MAGIC)
+            throw new BadParsingException("Not a class file");
+
+        input.readUnsignedShort(); // minor version
+        input.readUnsignedShort(); // major version
+
+        readConstantPool();
+
+        int accessFlags = input.readUnsignedShort();
+        String className = getClassName(input.readUnsignedShort());
+        int superIndex = input.readUnsignedShort();
+        String superclassName = (superIndex == 0 ? null : getClassName(superIndex));
+
+        String[] interfaceNames = new String[input.readUnsignedShort()];
+
+        for (int i = 0; i < interfaceNames.length; i++) {
+            interfaceNames[i] = getClassName(input.readUnsignedShort());
+        }
+
+        skipMembers(); // fields
+        skipMembers(); // methods
+
+        boolean nested = false;
+        boolean anonymous = false;
+
+        int attributesCount = input.readUnsignedShort();
+
+        for (int i = 0; i < attributesCount; i++) {
+            String name = getUtf8(input.readUnsignedShort());
+            int length = input.readInt();
+
+            if (name.equals(ATTRIBUTE_INNER_CLASSES)) {
+                int classesCount = input.readUnsignedShort();
+
+                for (int j = 0; j < classesCount; j++) {
+                    int innerClassIndex = input.readUnsignedShort();
+                    input.readUnsignedShort(); // outer class
+                    int innerNameIndex = input.readUnsignedShort();
+                    input.readUnsignedShort(); // inner access flags
+
+                    if (innerClassIndex != 0 && getClassName(innerClassIndex).equals(className)) {
+                        nested = true;
+
+                        if (innerNameIndex == 0)
+                            anonymous = true;
+                    }
+                }
+            } else {
+                skip(length);
+            }
+        }
+
+        return new ClassFileInfo(accessFlags, className, superclassName, interfaceNames, nested, anonymous);
+    }
+
+    private void readConstantPool() throws IOException, BadParsingException {
+        int count = input.readUnsignedShort();
+
+        utf8Constants = new String[count];
+        classNameIndexes = new int[count];
+
+        for (int i = 1; i < count; i++) {
+            int tag = input.readUnsignedByte();
+
+            switch (tag) {
+                case CONSTANT_UTF8:
+                    utf8Constants[i] = input.readUTF();
+                    break;
+                case CONSTANT_CLASS:
+                    classNameIndexes[i] = input.readUnsignedShort();
+                    break;
+                case CONSTANT_LONG:
+                case CONSTANT_DOUBLE:
+                    // takes two entries
+                    skip(8);
+                    i++;
+                    break;
+                case CONSTANT_STRING:
+                case CONSTANT_METHOD_TYPE:
+                case CONSTANT_MODULE:
+                case CONSTANT_PACKAGE:
+                    skip(2);
+                    break;
+                case CONSTANT_METHOD_HANDLE:
+                    skip(3);
+                    break;
+                case CONSTANT_INTEGER:
+                case CONSTANT_FLOAT:
+                case CONSTANT_FIELDREF:
+                case CONSTANT_METHODREF:
+                case CONSTANT_INTERFACE_METHODREF:
+                case CONSTANT_NAME_AND_TYPE:
+                case CONSTANT_DYNAMIC:
+                case CONSTANT_INVOKE_DYNAMIC:
+                    skip(4);
+                    break;
+                default:
+                    throw new BadParsingException("Unknown constant pool tag " + tag);
+            }
+        }
+    }
+
+    private void skipMembers() throws IOException {
+        int count = input.readUnsignedShort();
+
+        for (int i = 0; i < count; i++) {
+            skip(6); // access flags, name and descriptor
+
+            int attributesCount = input.readUnsignedShort();
+
+            for (int j = 0; j < attributesCount; j++) {
+                skip(2); // name
+                skip(input.readInt());
+            }
+        }
+    }
+
+    private String getUtf8(int index) throws BadParsingException {
+        String constant = utf8Constants[index];
+
+        if (constant == null)
+            throw new BadParsingException("Constant " + index + " is not utf8");
+
+        return constant;
+    }
+
+    private String getClassName(int index) throws BadParsingException {
+        if (classNameIndexes[index] <= 0)
+            throw new BadParsingException("Constant " + index + " is not class");
+
+        return getUtf8(classNameIndexes[index]).replace('/', '.');
+    }
+
+    private void skip(int length) throws IOException {
+        while (length > 0) {
+            int skipped = input.skipBytes(length);
+
+            if (skipped <= 0) {
+                input.readByte(); // throws at the end of stream
+                skipped = 1;
+            }
+
+            length -= skipped;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ru.objective.jni.utils;
+
+import ru.objective.jni.exceptions.BadParsingException;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Copies class file without method bodies before it is parsed by BCEL.
+ * Code attribute is kept with empty bytecode and exception table and with LocalVariableTable only,
+ * which builders read parameter names from, so bytecode, line numbers and stack maps are neither parsed nor kept.
+ */
+public class ClassFileStripper {
+
+    private static final String ATTRIBUTE_CODE = "Code";
+    private static final String ATTRIBUTE_LOCAL_VARIABLE_TABLE = "LocalVariableTable";
+
+    private final DataInputStream input;
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+    private final DataOutputStream output = new DataOutputStream(bytes);
+    private final byte[] buffer = new byte[8192];
+
+    // utf8 constants by index, attributes are recognized by name
+    private String[] utf8Constants;
+
+    private ClassFileStripper(InputStream stream) {
+        this.input = new DataInputStream(new BufferedInputStream(stream));
+    }
+
+    public static byte[] strip(InputStream stream) throws IOException, BadParsingException {
+        return new ClassFileStripper(stream).strip();
+    }
+
+    private byte[] strip() throws IOException, BadParsingException {
+        if (input.readInt() != ClassFileReader.MAGIC)
+            throw new BadParsingException("Not a class file");
+
+        output.writeInt(ClassFileReader.MAGIC);
+        copy(4); // minor and major version
+
+        copyConstantPool();
+
+        copy(6); // access flags, class and superclass
+        copy(2 * copyShort()); // interfaces
+
+        copyMembers(false); // fields
+        copyMembers(true); // methods
+
+        int attributesCount = copyShort();
+
+        for (int i = 0; i < attributesCount; i++) {
+            copy(2); // name
+            copy(copyInt());
+        }
+
+        output.flush();
+
+        return bytes.toByteArray();
+    }
+
+    private void copyConstantPool() throws IOException, BadParsingException {
+        int count = copyShort();
+
+        utf8Constants = new String[count];
+
+        for (int i = 1; i < count; i++) {
+            int tag = input.readUnsignedByte();
+            output.writeByte(tag);
+
+            switch (tag) {
+                case ClassFileReader.CONSTANT_UTF8:
+                    utf8Constants[i] = input.readUTF();
+                    output.writeUTF(utf8Constants[i]);
+                    break;
+                case ClassFileReader.CONSTANT_LONG:
+                case ClassFileReader.CONSTANT_DOUBLE:
+                    // takes two entries
+                    copy(8);
+                    i++;
+                    break;
+                case ClassFileReader.CONSTANT_CLASS:
+                case ClassFileReader.CONSTANT_STRING:
+                case ClassFileReader.CONSTANT_METHOD_TYPE:
+                case ClassFileReader.CONSTANT_MODULE:
+                case ClassFileReader.CONSTANT_PACKAGE:
+                    copy(2);
+                    break;
+                case ClassFileReader.CONSTANT_METHOD_HANDLE:
+                    copy(3);
+                    break;
+                case ClassFileReader.CONSTANT_INTEGER:
+                case ClassFileReader.CONSTANT_FLOAT:
+                case ClassFileReader.CONSTANT_FIELDREF:
+                case ClassFileReader.CONSTANT_METHODREF:
+                case ClassFileReader.CONSTANT_INTERFACE_METHODREF:
+                case ClassFileReader.CONSTANT_NAME_AND_TYPE:
+                case ClassFileReader.CONSTANT_DYNAMIC:
+                case ClassFileReader.CONSTANT_INVOKE_DYNAMIC:
+                    copy(4);
+                    break;
+                default:
+                    throw new BadParsingException("Unknown constant pool tag " + tag);
+            }
+        }
+    }
+
+    private void copyMembers(boolean methods) throws IOException, BadParsingException {
+        int count = copyShort();
+
+        for (int i = 0; i < count; i++) {
+            copy(6); // access flags, name and descriptor
+
+            int attributesCount = copyShort();
+
+            for (int j = 0; j < attributesCount; j++) {
+                int nameIndex = copyShort();
+
+                if (methods && getUtf8(nameIndex).equals(ATTRIBUTE_CODE))
+                    stripCode();
+                else
+                    copy(copyInt());
+            }
+        }
+    }
+
+    // writes Code attribute body with LocalVariableTable only
+    private void stripCode() throws IOException, BadParsingException {
+        input.readInt(); // length
+
+        int maxStack = input.readUnsignedShort();
+        int maxLocals = input.readUnsignedShort();
+
+        skip(input.readInt()); // bytecode
+        skip(8 * input.readUnsignedShort()); // exception table
+
+        int localVariablesIndex = 0;
+        byte[] localVariables = null;
+
+        int attributesCount = input.readUnsignedShort();
+
+        for (int i = 0; i < attributesCount; i++) {
+            int nameIndex = input.readUnsignedShort();
+            int length = input.readInt();
+
+            // BCEL uses the first one as well
+            if (localVariables == null && getUtf8(nameIndex).equals(ATTRIBUTE_LOCAL_VARIABLE_TABLE)) {
+                localVariablesIndex = nameIndex;
+                localVariables = new byte[length];
+                input.readFully(localVariables);
+            } else {
+                skip(length);
+            }
+        }
+
+        // max stack, max locals, bytecode length, exception table length and attributes count
+        int length = 2 + 2 + 4 + 2 + 2;
+
+        if (localVariables != null)
+            length += 6 + localVariables.length;
+
+        output.writeInt(length);
+        output.writeShort(maxStack);
+        output.writeShort(maxLocals);
+        output.writeInt(0);
+        output.writeShort(0);
+
+        if (localVariables != null) {
+            output.writeShort(1);
+            output.writeShort(localVariablesIndex);
+            output.writeInt(localVariables.length);
+            output.write(localVariables);
+        } else {
+            output.writeShort(0);
+        }
+    }
+
+    private String getUtf8(int index) throws BadParsingException {
+        String constant = (index < utf8Constants.length ? utf8Constants[index] : null);
+
+        if (constant == null)
+            throw new BadParsingException("Constant " + index + " is not utf8");
+
+        return constant;
+    }
+
+    private int copyShort() throws IOException {
+        int value = input.readUnsignedShort();
+        output.writeShort(value);
+
+        return value;
+    }
+
+    private int copyInt() throws IOException {
+        int value = input.readInt();
+        output.writeInt(value);
+
+        return value;
+    }
+
+    private void copy(int length) throws IOException {
+        while (length > 0) {
+            int count = Math.min(length, buffer.length);
+
+            input.readFully(buffer, 0, count);
+            output.write(buffer, 0, count);
+
+            length -= count;
+        }
+    }
+
+    private void skip(int length) throws IOException {
+        while (length > 0) {
+            int skipped = input.skipBytes(length);
+
+            if (skipped <= 0) {
+                input.readByte(); // throws at the end of stream
+                skipped = 1;
+            }
+
+            length -= skipped;
+        }
+    }
+}
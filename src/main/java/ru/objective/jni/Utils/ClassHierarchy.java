@@ -0,0 +1,130 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.objective.jni.utils;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Export verdicts of class hierarchies for one set of excludes.
+ * Verdict of every class is computed once from verdicts of its direct supertypes,
+ * so java.lang.Object and other common supertypes are checked once per run.
+ */
+public class ClassHierarchy {
+
+    private static class Node {
+        // class itself or any of its supertypes is excluded
+        final boolean excluded;
+        // first class of hierarchy not found in classpath, null if whole hierarchy is found
+        final String missingClassName;
+
+        Node(boolean excluded, String missingClassName) {
+            this.excluded = excluded;
+            this.missingClassName = missingClassName;
+        }
+    }
+
+    private final String[] excludes;
+    private final String[] excludedPackages;
+
+    private final ConcurrentHashMap<String, Node> nodes = new ConcurrentHashMap<>();
+    private final Set<String> warnedClasses = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    public ClassHierarchy(String[] excludes, String[] excludedPackages) {
+        this.excludes = excludes;
+        this.excludedPackages = excludedPackages;
+    }
+
+    public String[] getExcludes() {
+        return excludes;
+    }
+
+    public String[] getExcludedPackages() {
+        return excludedPackages;
+    }
+
+    /**
+     * Checks class and all its superclasses and interfaces are not excluded and present in classpath.
+     * Supertypes are taken from given header, so class itself may be not in classpath.
+     */
+    public boolean isExportHierarchy(String className, String superclassName, String[] interfaceNames) {
+        if (Utils.isClassNameExcluded(className, excludes, excludedPackages))
+            return false;
+
+        Node node = combine(false, superclassName, interfaceNames);
+
+        if (node.excluded)
+            return false;
+
+        if (node.missingClassName != null) {
+            if (warnedClasses.add(className)) {
+                System.out.println();
+                System.out.println("WARNING! One of superclass or interface of class " + className +
+                        " does not included in classpath and will skip. Reason: " + node.missingClassName + " not found");
+            }
+
+            return false; // ignore classes that does not included in classpath
+        }
+
+        return true;
+    }
+
+    private Node getNode(String className) {
+        Node node = nodes.get(className);
+
+        if (node != null)
+            return node;
+
+        boolean excluded = Utils.isClassNameExcluded(className, excludes, excludedPackages);
+
+        ClassFileInfo info = OJNIClassLoader.getInstance().loadClassInfo(className);
+
+        if (info == null)
+            node = new Node(excluded, className);
+        else
+            node = combine(excluded, info.getSuperclassName(), info.getInterfaceNames());
+
+        Node previous = nodes.putIfAbsent(className, node);
+
+        return (previous != null ? previous : node);
+    }
+
+    private Node combine(boolean excluded, String superclassName, String[] interfaceNames) {
+        String missingClassName = null;
+
+        for (String interfaceName : interfaceNames) {
+            Node node = getNode(interfaceName);
+
+            excluded |= node.excluded;
+
+            if (missingClassName == null)
+                missingClassName = node.missingClassName;
+        }
+
+        if (superclassName != null) {
+            Node node = getNode(superclassName);
+
+            excluded |= node.excluded;
+
+            if (missingClassName == null)
+                missingClassName = node.missingClassName;
+        }
+
+        return new Node(excluded, missingClassName);
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.objective.jni.utils;
+
+import org.apache.commons.bcel6.classfile.Method;
+import ru.objective.jni.tasks.types.MethodSignature;
+
+import java.util.HashMap;
+
+/**
+ * Export info and overload status of class methods, computed in one pass.
+ * Methods are overloaded when they share java name and arguments count.
+ */
+public class ClassMethodsInfo {
+
+    private final Method[] methods;
+    private final MethodExportInfo[] exportInfos;
+    private final boolean[] overloaded;
+
+    public ClassMethodsInfo(Method[] methods) {
+        this.methods = methods;
+        this.exportInfos = new MethodExportInfo[methods.length];
+        this.overloaded = new boolean[methods.length];
+
+        // first method index of every name and arguments count
+        HashMap<String, Integer> groups = new HashMap<>(methods.length * 2);
+
+        for (int i = 0; i < methods.length; i++) {
+            Method method = methods[i];
+
+            exportInfos[i] = Utils.getMethodExportInfo(method);
+
+            String key = method.getName() + "/" + MethodSignature.forSignature(method.getSignature()).getArgumentTypes().length;
+            Integer first = groups.get(key);
+
+            if (first == null) {
+                groups.put(key, i);
+            } else {
+                overloaded[first] = true;
+                overloaded[i] = true;
+            }
+        }
+    }
+
+    public Method[] getMethods() {
+        return methods;
+    }
+
+    public MethodExportInfo getExportInfo(int index) {
+        return exportInfos[index];
+    }
+
+    public boolean isOverloaded(int index) {
+        return overloaded[index];
+    }
+}
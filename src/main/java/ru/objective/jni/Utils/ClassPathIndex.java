@@ -0,0 +1,120 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.objective.jni.utils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Index of all classes available in repositories classpaths, built in one pass.
+ * Maps package to its class names and class name to repository it is loaded from.
+ * When class is present in several repositories, the first one added wins.
+ */
+public class ClassPathIndex {
+
+    private final HashMap<String, OJNIClassRepository> owners = new HashMap<>();
+    private final TreeMap<String, List<String>> packages = new TreeMap<>();
+
+    public ClassPathIndex() {
+    }
+
+    /**
+     * Copy of base index, repositories added to it do not change base.
+     */
+    public ClassPathIndex(ClassPathIndex base) {
+        owners.putAll(base.owners);
+
+        for (Map.Entry<String, List<String>> entry : base.packages.entrySet()) {
+            packages.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+        }
+    }
+
+    public void addRepository(OJNIClassRepository repository) {
+        String[] elements = repository.getClassPath().toString().split(File.pathSeparator);
+
+        for (String element : elements) {
+            if (element.isEmpty())
+                continue;
+
+            for (String fileName : ResourceList.getClassFileNames(element)) {
+                String className = Utils.getClassNameFromClassFileName(fileName);
+
+                if (owners.containsKey(className))
+                    continue;
+
+                owners.put(className, repository);
+
+                String packageName = getPackageName(className);
+                List<String> packageClasses = packages.get(packageName);
+
+                if (packageClasses == null) {
+                    packageClasses = new ArrayList<>();
+                    packages.put(packageName, packageClasses);
+                }
+
+                packageClasses.add(className);
+            }
+        }
+    }
+
+    public OJNIClassRepository getOwner(String className) {
+        return owners.get(className);
+    }
+
+    public boolean contains(String className) {
+        return owners.containsKey(className);
+    }
+
+    public int size() {
+        return owners.size();
+    }
+
+    /**
+     * Returns classes of package and all its subpackages.
+     */
+    public HashSet<String> getClassNamesFromPackage(String packageName) {
+        HashSet<String> result = new HashSet<>();
+
+        List<String> packageClasses = packages.get(packageName);
+
+        if (packageClasses != null)
+            result.addAll(packageClasses);
+
+        // subpackages are sorted right after "packageName." prefix
+        String subpackagePrefix = packageName + ".";
+
+        for (Map.Entry<String, List<String>> entry : packages.tailMap(subpackagePrefix).entrySet()) {
+            if (!entry.getKey().startsWith(subpackagePrefix))
+                break;
+
+            result.addAll(entry.getValue());
+        }
+
+        return result;
+    }
+
+    private static String getPackageName(String className) {
+        int index = className.lastIndexOf('.');
+
+        return (index == -1 ? "" : className.substring(0, index));
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.objective.jni.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Modification state of classpath entry, tells whether classes loaded from it are still valid.
+ * Jar is unchanged while its modification time and size are the same, or while its content hash is the same,
+ * e.g. when it was rebuilt with the same content. Directory state covers all files inside of it.
+ */
+public class ClassPathState {
+
+    private final Path path;
+
+    private long modified;
+    private long size;
+    // jar content hash, null for directories and missing entries
+    private final byte[] hash;
+
+    private ClassPathState(Path path, long modified, long size, byte[] hash) {
+        this.path = path;
+        this.modified = modified;
+        this.size = size;
+        this.hash = hash;
+    }
+
+    public static ClassPathState read(String classPath) throws IOException {
+        Path path = Paths.get(classPath);
+
+        long[] attributes = readAttributes(path);
+
+        byte[] hash = (Files.isRegularFile(path) ? getHash(path) : null);
+
+        return new ClassPathState(path, attributes[0], attributes[1], hash);
+    }
+
+    public synchronized boolean isUpToDate() throws IOException {
+        long[] attributes = readAttributes(path);
+
+        if (attributes[0] == modified && attributes[1] == size)
+            return true;
+
+        if (hash == null || !Files.isRegularFile(path) || !Arrays.equals(hash, getHash(path)))
+            return false;
+
+        // touched only, hash is not computed again until the next change
+        modified = attributes[0];
+        size = attributes[1];
+
+        return true;
+    }
+
+    // modification time and size, for directory the latest time and total size of its files
+    private static long[] readAttributes(Path path) throws IOException {
+        final long[] result = {-1, -1};
+
+        if (Files.isRegularFile(path)) {
+            result[0] = Files.getLastModifiedTime(path).toMillis();
+            result[1] = Files.size(path);
+        } else if (Files.isDirectory(path)) {
+            result[0] = Files.getLastModifiedTime(path).toMillis();
+            result[1] = 0;
+
+            Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    result[0] = Math.max(result[0], attrs.lastModifiedTime().toMillis());
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    result[0] = Math.max(result[0], attrs.lastModifiedTime().toMillis());
+                    // count files too, so replacing file with one of the same size is noticed by time
+                    result[1] += attrs.size() + 1;
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+
+        return result;
+    }
+
+    private static byte[] getHash(Path path) throws IOException {
+        MessageDigest digest;
+
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+
+        byte[] buffer = new byte[65536];
+
+        try (InputStream stream = Files.newInputStream(path)) {
+            int read;
+
+            while ((read = stream.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+
+        return digest.digest();
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.objective.jni.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Exclude rules compiled once: exact class names go to hash set, packages to trie,
+ * wildcard and regex rules to single pattern. Verdicts are memoized per class name.
+ *
+ * Rule syntax, both for classes and packages:
+ *   java.util.HashMap  - exact name
+ *   java.*.Hash*       - wildcard, * matches inside one name part, ** matches any part of name, ? matches one char
+ *   regex:java\.util\..*Map - regular expression matched against whole name
+ * Package rule excludes all classes of package and its subpackages.
+ */
+public class ExclusionMatcher {
+
+    public static final String REGEX_PREFIX = "regex:";
+
+    private static class PackageNode {
+        final HashMap<String, PackageNode> children = new HashMap<>();
+        boolean excluded;
+    }
+
+    // rule sets of concurrent batch jobs differ, so matchers are kept per rule set
+    private static final int MAX_RULE_SETS = 64;
+    private static final ConcurrentHashMap<RulesKey, ExclusionMatcher> matchers = new ConcurrentHashMap<>();
+
+    /**
+     * Exclude rules as map key, equal when both arrays are equal.
+     */
+    static final class RulesKey {
+        private final String[] excludes;
+        private final String[] excludedPackages;
+        private final int hash;
+
+        RulesKey(String[] excludes, String[] excludedPackages) {
+            this.excludes = excludes;
+            this.excludedPackages = excludedPackages;
+            this.hash = 31 * Arrays.hashCode(excludes) + Arrays.hashCode(excludedPackages);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof RulesKey))
+                return false;
+
+            RulesKey other = (RulesKey)obj;
+
+            return hash == other.hash && Arrays.equals(excludes, other.excludes) &&
+                    Arrays.equals(excludedPackages, other.excludedPackages);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private final String[] excludes;
+    private final String[] excludedPackages;
+
+    private final HashSet<String> classNames = new HashSet<>();
+    private final PackageNode packages = new PackageNode();
+    private final Pattern pattern;
+
+    private final ConcurrentHashMap<String, Boolean> verdicts = new ConcurrentHashMap<>();
+
+    public ExclusionMatcher(String[] excludes, String[] excludedPackages) {
+        this.excludes = excludes;
+        this.excludedPackages = excludedPackages;
+
+        ArrayList<String> patterns = new ArrayList<>();
+
+        if (excludes != null) {
+            for (String excluded : excludes) {
+                if (isPattern(excluded))
+                    patterns.add(toRegex(excluded));
+                else
+                    classNames.add(excluded);
+            }
+        }
+
+        if (excludedPackages != null) {
+            for (String excluded : excludedPackages) {
+                if (isPattern(excluded))
+                    patterns.add("(?:" + toRegex(excluded) + ")\\..*");
+                else
+                    addPackage(excluded);
+            }
+        }
+
+        if (patterns.isEmpty()) {
+            pattern = null;
+        } else {
+            StringBuilder regex = new StringBuilder();
+
+            for (String value : patterns) {
+                if (regex.length() > 0)
+                    regex.append('|');
+
+                regex.append("(?:").append(value).append(')');
+            }
+
+            pattern = Pattern.compile(regex.toString());
+        }
+    }
+
+    /**
+     * Returns matcher for given rules, shared by all callers with the same rules.
+     */
+    public static ExclusionMatcher forRules(String[] excludes, String[] excludedPackages) {
+        RulesKey key = new RulesKey(excludes, excludedPackages);
+        ExclusionMatcher result = matchers.get(key);
+
+        if (result != null)
+            return result;
+
+        // e.g. daemon serving requests with ever different rules
+        if (matchers.size() >= MAX_RULE_SETS)
+            matchers.clear();
+
+        result = new ExclusionMatcher(excludes, excludedPackages);
+
+        ExclusionMatcher previous = matchers.putIfAbsent(key, result);
+
+        return (previous != null ? previous : result);
+    }
+
+    public boolean isExcluded(String className) {
+        Boolean verdict = verdicts.get(className);
+
+        if (verdict == null) {
+            verdict = match(Utils.getBasicType(className));
+            verdicts.put(className, verdict);
+        }
+
+        return verdict;
+    }
+
+    private boolean match(String className) {
+        if (classNames.contains(className))
+            return true;
+
+        // walk package parts, last part is a class name itself
+        PackageNode node = packages;
+        int start = 0;
+        int end;
+
+        while ((end = className.indexOf('.', start)) != -1) {
+            node = node.children.get(className.substring(start, end));
+
+            if (node == null)
+                break;
+
+            if (node.excluded)
+                return true;
+
+            start = end + 1;
+        }
+
+        return pattern != null && pattern.matcher(className).matches();
+    }
+
+    private void addPackage(String packageName) {
+        PackageNode node = packages;
+
+        for (String part : packageName.split("\\.", -1)) {
+            PackageNode child = node.children.get(part);
+
+            if (child == null) {
+                child = new PackageNode();
+                node.children.put(part, child);
+            }
+
+            node = child;
+        }
+
+        node.excluded = true;
+    }
+
+    private static boolean isPattern(String rule) {
+        return rule.startsWith(REGEX_PREFIX) || rule.indexOf('*') != -1 || rule.indexOf('?') != -1;
+    }
+
+    static String toRegex(String rule) {
+        if (rule.startsWith(REGEX_PREFIX))
+            return rule.substring(REGEX_PREFIX.length());
+
+        StringBuilder result = new StringBuilder();
+        int literalStart = 0;
+
+        for (int i = 0; i < rule.length(); i++) {
+            char c = rule.charAt(i);
+
+            if (c != '*' && c != '?')
+                continue;
+
+            if (i > literalStart)
+                result.append(Pattern.quote(rule.substring(literalStart, i)));
+
+            if (c == '?') {
+                result.append("[^.]");
+            } else if (i + 1 < rule.length() && rule.charAt(i + 1) == '*') {
+                result.append(".*");
+                i++;
+            } else {
+                result.append("[^.]*");
+            }
+
+            literalStart = i + 1;
+        }
+
+        if (literalStart < rule.length())
+            result.append(Pattern.quote(rule.substring(literalStart)));
+
+        return result.toString();
+    }
+}
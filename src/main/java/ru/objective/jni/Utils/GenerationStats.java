@@ -0,0 +1,268 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.objective.jni.utils;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per phase timers and counters of generation, collected only when enabled.
+ *
+ * Phases nest, time of nested phase is not counted in enclosing one,
+ * so phase times of each thread add up to time spent inside phases.
+ * Times are summed over all threads, so with several threads they may exceed wall time.
+ *
+ * Usage:
+ *   GenerationStats.enter(Phase.PARSE);
+ *   try { ... } finally { GenerationStats.exit(); }
+ */
+public final class GenerationStats {
+
+    public enum Phase {
+        SCAN("jar scanning"),
+        PARSE("class parsing"),
+        FILTER("export filtering"),
+        BUILD("building"),
+        RENDER("template rendering"),
+        WRITE("file writing");
+
+        private final String title;
+
+        Phase(String title) {
+            this.title = title;
+        }
+    }
+
+    public enum Counter {
+        CLASSES_VISITED,
+        CLASSES_GENERATED,
+        CLASSES_REUSED,
+        CLASSES_STUBBED,
+        CLASS_CACHE_HITS,
+        CLASS_CACHE_MISSES,
+        CLASSES_EVICTED,
+        CLASSES_PARSED,
+        CLASS_HEADERS_READ,
+        EXPORT_CHECKS,
+        EXCLUSION_CHECKS,
+        MEMBERS_EXCLUDED,
+        FILES_WRITTEN,
+        FILES_UNCHANGED,
+        BYTES_WRITTEN
+    }
+
+    private static class ThreadStats {
+        final int generation;
+        final long[] nanos = new long[Phase.values().length];
+
+        Phase[] stack = new Phase[8];
+        int depth;
+        long since;
+
+        ThreadStats(int generation) {
+            this.generation = generation;
+        }
+    }
+
+    private static volatile boolean enabled;
+    private static volatile int generation;
+    private static volatile long startNanos;
+    private static volatile long stopNanos;
+
+    private static final CopyOnWriteArrayList<ThreadStats> threads = new CopyOnWriteArrayList<>();
+    private static final AtomicLongArray counters = new AtomicLongArray(Counter.values().length);
+
+    private static final ThreadLocal<ThreadStats> local = new ThreadLocal<>();
+
+    private GenerationStats() {}
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Clears collected stats and starts wall time, stats are collected until stop.
+     */
+    public static synchronized void start() {
+        generation++;
+        threads.clear();
+
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, 0);
+        }
+
+        startNanos = System.nanoTime();
+        enabled = true;
+    }
+
+    public static synchronized void stop() {
+        if (!enabled)
+            return;
+
+        enabled = false;
+        stopNanos = System.nanoTime();
+    }
+
+    public static void enter(Phase phase) {
+        if (!enabled)
+            return;
+
+        ThreadStats stats = getThreadStats();
+        long now = System.nanoTime();
+
+        if (stats.depth > 0)
+            stats.nanos[stats.stack[stats.depth - 1].ordinal()] += now - stats.since;
+
+        if (stats.depth == stats.stack.length)
+            stats.stack = Arrays.copyOf(stats.stack, stats.depth * 2);
+
+        stats.stack[stats.depth++] = phase;
+        stats.since = now;
+    }
+
+    public static void exit() {
+        if (!enabled)
+            return;
+
+        ThreadStats stats = getThreadStats();
+
+        // stats were started inside of this phase
+        if (stats.depth == 0)
+            return;
+
+        long now = System.nanoTime();
+
+        stats.nanos[stats.stack[--stats.depth].ordinal()] += now - stats.since;
+        stats.since = now;
+    }
+
+    public static void increment(Counter counter) {
+        if (enabled)
+            counters.incrementAndGet(counter.ordinal());
+    }
+
+    public static void add(Counter counter, long value) {
+        if (enabled)
+            counters.addAndGet(counter.ordinal(), value);
+    }
+
+    private static ThreadStats getThreadStats() {
+        ThreadStats stats = local.get();
+
+        if (stats == null || stats.generation != generation) {
+            stats = new ThreadStats(generation);
+            local.set(stats);
+            threads.add(stats);
+        }
+
+        return stats;
+    }
+
+    public static long getPhaseNanos(Phase phase) {
+        long result = 0;
+
+        // read after worker threads are finished, so their plain fields are visible
+        for (ThreadStats stats : threads) {
+            result += stats.nanos[phase.ordinal()];
+        }
+
+        return result;
+    }
+
+    public static long getCounter(Counter counter) {
+        return counters.get(counter.ordinal());
+    }
+
+    public static long getWallNanos() {
+        return (enabled ? System.nanoTime() : stopNanos) - startNanos;
+    }
+
+    public static String getTextReport() {
+        StringBuilder report = new StringBuilder();
+        String separator = System.lineSeparator();
+
+        report.append(String.format(Locale.US, "Stats: %.1f ms wall time, %d threads", getWallNanos() / 1e6, threads.size()))
+                .append(separator);
+
+        for (Phase phase : Phase.values()) {
+            report.append(String.format(Locale.US, "  %-20s %12.1f ms", phase.title, getPhaseNanos(phase) / 1e6))
+                    .append(separator);
+        }
+
+        for (Counter counter : Counter.values()) {
+            report.append(String.format(Locale.US, "  %-20s %12d", counter.name().toLowerCase(Locale.US).replace('_', ' '),
+                    getCounter(counter))).append(separator);
+        }
+
+        long lookups = getCounter(Counter.CLASS_CACHE_HITS) + getCounter(Counter.CLASS_CACHE_MISSES);
+
+        if (lookups > 0) {
+            report.append(String.format(Locale.US, "  %-20s %12.1f %%", "class cache hit rate",
+                    getCounter(Counter.CLASS_CACHE_HITS) * 100.0 / lookups)).append(separator);
+            report.append(String.format(Locale.US, "  %-20s %12.1f %%", "class eviction rate",
+                    getCounter(Counter.CLASSES_EVICTED) * 100.0 / lookups)).append(separator);
+        }
+
+        return report.toString();
+    }
+
+    public static String getJsonReport() {
+        StringBuilder report = new StringBuilder("{\"wallMillis\": ");
+
+        report.append(getWallNanos() / 1000000).append(", \"threads\": ").append(threads.size())
+                .append(", \"phaseMillis\": {");
+
+        for (Phase phase : Phase.values()) {
+            if (phase.ordinal() > 0)
+                report.append(", ");
+
+            report.append('"').append(getJsonName(phase.name())).append("\": ").append(getPhaseNanos(phase) / 1000000);
+        }
+
+        report.append("}, \"counters\": {");
+
+        for (Counter counter : Counter.values()) {
+            if (counter.ordinal() > 0)
+                report.append(", ");
+
+            report.append('"').append(getJsonName(counter.name())).append("\": ").append(getCounter(counter));
+        }
+
+        return report.append("}}").toString();
+    }
+
+    // CLASS_CACHE_HITS -> classCacheHits
+    private static String getJsonName(String name) {
+        StringBuilder result = new StringBuilder(name.length());
+        boolean upper = false;
+
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+
+            if (c == '_') {
+                upper = true;
+            } else {
+                result.append(upper ? c : Character.toLowerCase(c));
+                upper = false;
+            }
+        }
+
+        return result.toString();
+    }
+}
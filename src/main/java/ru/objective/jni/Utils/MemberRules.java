@@ -0,0 +1,299 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.objective.jni.utils;
+
+import org.apache.commons.bcel6.classfile.FieldOrMethod;
+import org.apache.commons.bcel6.classfile.Method;
+import ru.objective.jni.exceptions.BadParsingException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Member include and exclude rules loaded from file, consulted by builders for each exported method and field.
+ *
+ * One rule per line, # starts comment line:
+ *   exclude method name=*Deprecated*
+ *   include member class=com.acme.model.* name=get*
+ *   exclude field class=com.acme.** visibility=protected
+ *   exclude method descriptor=*Ljava/util/concurrent/Future;*
+ *
+ * Kind is method, field or member for both. Filters are optional, all given filters should match:
+ *   class      - class name, same syntax as --exclude
+ *   name       - member name, constructors are named <init>, * and ? wildcards
+ *   descriptor - JVM descriptor, e.g. (I)Ljava/lang/String;, * and ? wildcards
+ *   visibility - public, protected, package or private
+ * Name and descriptor also accept regex: prefixed regular expressions.
+ *
+ * The last matching rule wins. Member without matching rule is exported, unless there is
+ * include rule of its kind for its class, so include rules work as allowlist.
+ */
+public class MemberRules {
+
+    private static final String[] VISIBILITIES = {"public", "protected", "package", "private"};
+
+    private static final class Rule {
+        final boolean include;
+        final boolean methods;
+        final boolean fields;
+
+        // null when not specified
+        Pattern classPattern;
+        Pattern namePattern;
+        Pattern descriptorPattern;
+        String visibility;
+
+        Rule(boolean include, boolean methods, boolean fields) {
+            this.include = include;
+            this.methods = methods;
+            this.fields = fields;
+        }
+
+        boolean matches(FieldOrMethod member, boolean isMethod) {
+            return (isMethod ? methods : fields) &&
+                    (namePattern == null || namePattern.matcher(member.getName()).matches()) &&
+                    (descriptorPattern == null || descriptorPattern.matcher(member.getSignature()).matches()) &&
+                    (visibility == null || visibility.equals(getVisibility(member)));
+        }
+    }
+
+    // rules of single class, selected once per class
+    private static final class ClassRules {
+        final Rule[] rules;
+        final boolean methodsByDefault;
+        final boolean fieldsByDefault;
+
+        ClassRules(Rule[] rules, boolean methodsByDefault, boolean fieldsByDefault) {
+            this.rules = rules;
+            this.methodsByDefault = methodsByDefault;
+            this.fieldsByDefault = fieldsByDefault;
+        }
+    }
+
+    private final Rule[] rules;
+    private final String source;
+
+    private final ConcurrentHashMap<String, ClassRules> classRules = new ConcurrentHashMap<>();
+
+    private MemberRules(Rule[] rules, String source) {
+        this.rules = rules;
+        this.source = source;
+    }
+
+    public static MemberRules load(Path path) throws IOException, BadParsingException {
+        List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+
+        ArrayList<Rule> rules = new ArrayList<>();
+        StringBuilder source = new StringBuilder();
+
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+
+            try {
+                rules.add(parseRule(line));
+            } catch (IllegalArgumentException e) {
+                throw new BadParsingException(path + ":" + (i + 1) + ": " + e.getMessage());
+            }
+
+            source.append(line).append('\n');
+        }
+
+        return new MemberRules(rules.toArray(new Rule[rules.size()]), source.toString());
+    }
+
+    private static Rule parseRule(String line) {
+        String[] parts = line.split("\\s+");
+
+        if (parts.length < 2)
+            throw new IllegalArgumentException("Expected include or exclude, kind and filters");
+
+        boolean include;
+
+        if (parts[0].equals("include"))
+            include = true;
+        else if (parts[0].equals("exclude"))
+            include = false;
+        else
+            throw new IllegalArgumentException("Unknown action " + parts[0] + ", expected include or exclude");
+
+        Rule rule;
+
+        switch (parts[1]) {
+            case "method":
+                rule = new Rule(include, true, false);
+                break;
+            case "field":
+                rule = new Rule(include, false, true);
+                break;
+            case "member":
+                rule = new Rule(include, true, true);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown kind " + parts[1] + ", expected method, field or member");
+        }
+
+        for (int i = 2; i < parts.length; i++) {
+            int index = parts[i].indexOf('=');
+
+            if (index <= 0 || index == parts[i].length() - 1)
+                throw new IllegalArgumentException("Expected filter=value instead of " + parts[i]);
+
+            String key = parts[i].substring(0, index);
+            String value = parts[i].substring(index + 1);
+
+            switch (key) {
+                case "class":
+                    rule.classPattern = Pattern.compile(ExclusionMatcher.toRegex(value));
+                    break;
+                case "name":
+                    rule.namePattern = Pattern.compile(toRegex(value));
+                    break;
+                case "descriptor":
+                    rule.descriptorPattern = Pattern.compile(toRegex(value));
+                    break;
+                case "visibility":
+                    if (!isVisibility(value))
+                        throw new IllegalArgumentException("Unknown visibility " + value + ", expected public, protected, package or private");
+
+                    rule.visibility = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown filter " + key + ", expected class, name, descriptor or visibility");
+            }
+        }
+
+        return rule;
+    }
+
+    private static boolean isVisibility(String value) {
+        for (String visibility : VISIBILITIES) {
+            if (visibility.equals(value))
+                return true;
+        }
+
+        return false;
+    }
+
+    // unlike class names, * matches any chars, names and descriptors have no parts
+    private static String toRegex(String glob) {
+        if (glob.startsWith(ExclusionMatcher.REGEX_PREFIX))
+            return glob.substring(ExclusionMatcher.REGEX_PREFIX.length());
+
+        StringBuilder result = new StringBuilder();
+        int literalStart = 0;
+
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+
+            if (c != '*' && c != '?')
+                continue;
+
+            if (i > literalStart)
+                result.append(Pattern.quote(glob.substring(literalStart, i)));
+
+            result.append(c == '*' ? ".*" : ".");
+            literalStart = i + 1;
+        }
+
+        if (literalStart < glob.length())
+            result.append(Pattern.quote(glob.substring(literalStart)));
+
+        return result.toString();
+    }
+
+    private static String getVisibility(FieldOrMethod member) {
+        if (member.isPublic())
+            return "public";
+
+        if (member.isProtected())
+            return "protected";
+
+        if (member.isPrivate())
+            return "private";
+
+        return "package";
+    }
+
+    public boolean isExported(String className, FieldOrMethod member) {
+        ClassRules forClass = getClassRules(className);
+        boolean isMethod = (member instanceof Method);
+
+        for (int i = forClass.rules.length - 1; i >= 0; i--) {
+            Rule rule = forClass.rules[i];
+
+            if (rule.matches(member, isMethod)) {
+                if (!rule.include)
+                    GenerationStats.increment(GenerationStats.Counter.MEMBERS_EXCLUDED);
+
+                return rule.include;
+            }
+        }
+
+        boolean exported = (isMethod ? forClass.methodsByDefault : forClass.fieldsByDefault);
+
+        if (!exported)
+            GenerationStats.increment(GenerationStats.Counter.MEMBERS_EXCLUDED);
+
+        return exported;
+    }
+
+    private ClassRules getClassRules(String className) {
+        ClassRules result = classRules.get(className);
+
+        if (result != null)
+            return result;
+
+        ArrayList<Rule> matched = new ArrayList<>();
+        boolean methodsByDefault = true;
+        boolean fieldsByDefault = true;
+
+        for (Rule rule : rules) {
+            if (rule.classPattern != null && !rule.classPattern.matcher(className).matches())
+                continue;
+
+            matched.add(rule);
+
+            if (rule.include) {
+                methodsByDefault &= !rule.methods;
+                fieldsByDefault &= !rule.fields;
+            }
+        }
+
+        result = new ClassRules(matched.toArray(new Rule[matched.size()]), methodsByDefault, fieldsByDefault);
+
+        ClassRules previous = classRules.putIfAbsent(className, result);
+
+        return (previous != null ? previous : result);
+    }
+
+    /**
+     * Rules without comments and blank lines, changes when rules change.
+     */
+    @Override
+    public String toString() {
+        return source;
+    }
+}
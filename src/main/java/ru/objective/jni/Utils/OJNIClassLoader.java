@@ -18,85 +18,338 @@ package ru.objective.jni.utils;
 
 import org.apache.commons.bcel6.classfile.JavaClass;
 import org.apache.commons.bcel6.util.ClassPath;
-import org.apache.commons.bcel6.util.SyntheticRepository;
+import ru.objective.jni.tasks.types.JavaType;
+import ru.objective.jni.tasks.types.MethodSignature;
+import ru.objective.jni.tasks.types.ObjCTypeResolver;
 
 import java.io.IOException;
-import java.util.Collection;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
-import java.util.regex.Pattern;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created by ashitikov on 09.12.15.
  */
 public class OJNIClassLoader {
-    private static OJNIClassLoader instance = new OJNIClassLoader();
 
-    private SyntheticRepository systemRepository;
-    private SyntheticRepository[] cpRepositories;
+    // parsed classes and class headers of all loaders, bounded by --class-cache
+    private static final ClassCache classCache = new ClassCache();
 
+    // system classes are shared by all loaders
+    private static final OJNIClassRepository systemRepository = new OJNIClassRepository(ClassPath.SYSTEM_CLASS_PATH, classCache);
+    private static ClassPathIndex systemIndex;
+
+    private static final OJNIClassLoader instance = new OJNIClassLoader();
+
+    // loader of batch job, inherited by threads the job starts
+    private static final InheritableThreadLocal<OJNIClassLoader> current = new InheritableThreadLocal<>();
+
+    // hierarchies per loader, e.g. of daemon loader serving requests with ever different excludes
+    private static final int MAX_CLASS_HIERARCHIES = 64;
+
+    private OJNIClassRepository[] cpRepositories;
+
+    // classpaths repositories were created from, to reuse them while unchanged
+    private String[] classPathNames;
+    private ClassPathState[] classPathStates;
+    private boolean trackClassPaths;
+
+    private volatile ClassPathIndex classPathIndex;
+
+    // hierarchy verdicts per exclude rules, jobs with different rules may share loader
+    private final ConcurrentHashMap<ExclusionMatcher.RulesKey, ClassHierarchy> classHierarchies = new ConcurrentHashMap<>();
+
+    // names known to be absent, each name is looked up once per run, class headers are kept in class cache
+    private final Set<String> missingClasses = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /**
+     * Loader bound to current thread with setCurrent, default one otherwise.
+     */
     public static OJNIClassLoader getInstance() {
-        return instance;
+        OJNIClassLoader loader = current.get();
+
+        return (loader != null ? loader : instance);
+    }
+
+    /**
+     * Binds loader to current thread and to threads it starts afterwards, null restores default loader.
+     */
+    public static void setCurrent(OJNIClassLoader loader) {
+        if (loader == null)
+            current.remove();
+        else
+            current.set(loader);
+    }
+
+    /**
+     * Makes setClassPaths record state of classpaths, so classes are reloaded when they change, e.g. for daemon.
+     * Recording hashes every jar and walks every directory, so it is off for loaders living single run.
+     */
+    public synchronized void setTrackClassPaths(boolean track) {
+        trackClassPaths = track;
+    }
+
+    /**
+     * Sets classpaths by names, keeping loaded classes when they are the same as current ones
+     * and none of them has changed since. Returns false when classes were kept.
+     */
+    public synchronized boolean setClassPaths(String[] classPaths) throws IOException {
+        // only system classpath, e.g. for --class of JDK classes
+        if (classPaths == null)
+            classPaths = new String[0];
+
+        if (classPathNames != null && Arrays.equals(classPathNames, classPaths) && isUpToDate())
+            return false;
+
+        ClassPathState[] states = null;
+
+        if (trackClassPaths) {
+            states = new ClassPathState[classPaths.length];
+
+            for (int i = 0; i < states.length; i++) {
+                states[i] = ClassPathState.read(classPaths[i]);
+            }
+        }
+
+        setClassPaths(Utils.classPathsFromStrings(classPaths));
+
+        // interned types are not bound to classpaths, but would otherwise grow with each reload of daemon
+        JavaType.clearInterned();
+        MethodSignature.clearInterned();
+        ObjCTypeResolver.clearResolvers();
+
+        classPathNames = classPaths.clone();
+        classPathStates = states;
+
+        return true;
+    }
+
+    // untracked classpaths are not expected to change during single run
+    private boolean isUpToDate() throws IOException {
+        if (classPathStates == null)
+            return !trackClassPaths;
+
+        for (ClassPathState state : classPathStates) {
+            if (!state.isUpToDate())
+                return false;
+        }
+
+        return true;
     }
 
     public void setClassPaths(ClassPath[] classPaths) {
-        cpRepositories = new SyntheticRepository[classPaths.length];
+        if (cpRepositories != null) {
+            for (OJNIClassRepository repository : cpRepositories) {
+                repository.clear();
+            }
+        }
+
+        cpRepositories = new OJNIClassRepository[classPaths.length];
 
         for (int i = 0; i < cpRepositories.length; i++) {
-            cpRepositories[i] = SyntheticRepository.getInstance(classPaths[i]);
+            cpRepositories[i] = new OJNIClassRepository(classPaths[i], classCache);
+        }
+
+        synchronized (this) {
+            classPathNames = null;
+            classPathStates = null;
+            classPathIndex = null;
         }
+
+        classHierarchies.clear();
+
+        classCache.removeAll(this);
+        missingClasses.clear();
+    }
+
+    /**
+     * Drops parsed classes of classpaths, e.g. when loader is not used anymore.
+     */
+    public void clear() {
+        setClassPaths(new ClassPath[0]);
+    }
+
+    /**
+     * Loader of its own classpaths, system classes and class cache are shared with other loaders.
+     */
+    public OJNIClassLoader() {
     }
 
-    private OJNIClassLoader() {
-        systemRepository = SyntheticRepository.getInstance();
+    /**
+     * Limits estimated heap size of parsed classes and class headers of all loaders, Long.MAX_VALUE keeps all of them.
+     */
+    public void setClassCacheSize(long bytes) {
+        classCache.setMaxSize(bytes);
+    }
+
+    public ClassCache getClassCache() {
+        return classCache;
     }
 
     public JavaClass loadClass(String className) {
         className = Utils.getDottedClassName(Utils.getBasicType(className));
 
+        if (missingClasses.contains(className)) {
+            GenerationStats.increment(GenerationStats.Counter.CLASS_CACHE_HITS);
+            return null;
+        }
+
+        OJNIClassRepository owner = getClassPathIndex().getOwner(className);
         JavaClass found = null;
 
+        if (owner != null)
+            found = owner.tryLoadClass(className);
+
+        // classes outside of indexed classpaths, e.g. served by system class loader only
+        if (found == null)
+            found = systemRepository.tryLoadClass(className);
+
+        if (found == null)
+            missingClasses.add(className);
+
+        return found;
+    }
+
+    /**
+     * Loads lightweight class model, without parsing methods code.
+     * Use it when full JavaClass is not needed.
+     */
+    public ClassFileInfo loadClassInfo(String className) {
+        className = Utils.getDottedClassName(Utils.getBasicType(className));
+
+        ClassFileInfo found = classCache.getInfo(this, className);
+
+        if (found != null || missingClasses.contains(className)) {
+            GenerationStats.increment(GenerationStats.Counter.CLASS_CACHE_HITS);
+            return found;
+        }
+
+        OJNIClassRepository owner = getClassPathIndex().getOwner(className);
+
+        GenerationStats.enter(GenerationStats.Phase.PARSE);
+
         try {
-            found = systemRepository.loadClass(className);
-        } catch (Exception e) {}
+            if (owner != null)
+                found = readClassInfo(owner, className);
+
+            // classes outside of indexed classpaths, e.g. served by system class loader only
+            if (found == null)
+                found = readClassInfo(systemRepository, className);
+        } finally {
+            GenerationStats.exit();
+        }
+
+        GenerationStats.increment(GenerationStats.Counter.CLASS_HEADERS_READ);
 
         if (found == null) {
-            for (SyntheticRepository repository : cpRepositories) {
-                try {
-                    found = repository.loadClass(className);
+            missingClasses.add(className);
+            return null;
+        }
 
-                    if (found != null) {
-                        break;
-                    }
+        return classCache.putInfoIfAbsent(this, className, found);
+    }
+
+    public boolean isInterface(String className) {
+        ClassFileInfo info = loadClassInfo(className);
+
+        return info != null && info.isInterface();
+    }
+
+    private static ClassFileInfo readClassInfo(OJNIClassRepository repository, String className) {
+        InputStream stream = null;
+
+        try {
+            stream = repository.getClassPath().getInputStream(className);
+
+            if (stream == null)
+                return null;
+
+            return ClassFileReader.read(stream);
+        } catch (Exception e) {
+            return null;
+        } finally {
+            if (stream != null) {
+                try {
+                    stream.close();
                 } catch (Exception e) {}
             }
         }
+    }
 
-        return found;
+    /**
+     * Hierarchy verdicts for given excludes, shared by callers with the same excludes until classpaths change.
+     */
+    public ClassHierarchy getClassHierarchy(String[] excludes, String[] excludedPackages) {
+        ExclusionMatcher.RulesKey key = new ExclusionMatcher.RulesKey(excludes, excludedPackages);
+        ClassHierarchy result = classHierarchies.get(key);
+
+        if (result != null)
+            return result;
+
+        if (classHierarchies.size() >= MAX_CLASS_HIERARCHIES)
+            classHierarchies.clear();
+
+        result = new ClassHierarchy(excludes, excludedPackages);
+
+        ClassHierarchy previous = classHierarchies.putIfAbsent(key, result);
+
+        return (previous != null ? previous : result);
     }
 
-    public String[] getClassNamesFromPackage(String packageName) throws IOException {
+    public String[] getClassNamesFromPackage(String packageName) {
         HashSet<String> result = getClassNamesSetFromPackage(packageName);
 
         return result.toArray(new String[result.size()]);
     }
 
-    public HashSet<String> getClassNamesSetFromPackage(String packageName) throws IOException {
-        HashSet<String> result = new HashSet<>();
+    public HashSet<String> getClassNamesSetFromPackage(String packageName) {
+        return getClassPathIndex().getClassNamesFromPackage(packageName);
+    }
 
-        Pattern pattern = Pattern.compile(packageName + ".*.class");
+    /**
+     * Index of system and specified classpaths, built once on first use.
+     * System classpath is scanned once and copied to indexes of next classpaths.
+     */
+    public ClassPathIndex getClassPathIndex() {
+        ClassPathIndex result = classPathIndex;
 
-        final Collection<String> systemList = ResourceList.getResources(systemRepository.getClassPath(), pattern);
-        for(String name : systemList){
-            result.add(Utils.getClassNameFromClassFileName(name));
-        }
+        if (result != null)
+            return result;
+
+        synchronized (this) {
+            if (classPathIndex == null) {
+                GenerationStats.enter(GenerationStats.Phase.SCAN);
+
+                try {
+                    ClassPathIndex index = new ClassPathIndex(getSystemIndex());
+
+                    if (cpRepositories != null) {
+                        for (OJNIClassRepository repository : cpRepositories) {
+                            index.addRepository(repository);
+                        }
+                    }
 
-        for (SyntheticRepository repository : cpRepositories) {
-            final Collection<String> cpList = ResourceList.getResources(repository.getClassPath(), pattern);
-            for(String name : cpList){
-                result.add(Utils.getClassNameFromClassFileName(name));
+                    classPathIndex = index;
+                } finally {
+                    GenerationStats.exit();
+                }
             }
+
+            return classPathIndex;
+        }
+    }
+
+    private static synchronized ClassPathIndex getSystemIndex() {
+        if (systemIndex == null) {
+            ClassPathIndex index = new ClassPathIndex();
+            index.addRepository(systemRepository);
+
+            systemIndex = index;
         }
 
-        return result;
+        return systemIndex;
     }
 }
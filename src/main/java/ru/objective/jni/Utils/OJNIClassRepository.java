@@ -0,0 +1,158 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.objective.jni.utils;
+
+import org.apache.commons.bcel6.classfile.ClassFormatException;
+import org.apache.commons.bcel6.classfile.ClassParser;
+import org.apache.commons.bcel6.classfile.JavaClass;
+import org.apache.commons.bcel6.util.ClassPath;
+import org.apache.commons.bcel6.util.Repository;
+import ru.objective.jni.exceptions.BadParsingException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Thread safe replacement of SyntheticRepository.
+ * Loaded classes are shared between generator threads, so every class is
+ * fully prepared before it becomes visible to other threads.
+ * Classes are kept in ClassCache, which may evict them, so class is parsed again when needed.
+ * Method bodies are stripped by ClassFileStripper before parsing, as builders read only declarations.
+ */
+public class OJNIClassRepository implements Repository {
+
+    private final ClassPath classPath;
+    private final ClassCache cache;
+
+    public OJNIClassRepository(ClassPath classPath) {
+        this(classPath, new ClassCache());
+    }
+
+    public OJNIClassRepository(ClassPath classPath, ClassCache cache) {
+        this.classPath = classPath;
+        this.cache = cache;
+    }
+
+    @Override
+    public void storeClass(JavaClass clazz) {
+        clazz.setRepository(this);
+
+        cache.put(this, clazz.getClassName(), clazz, clazz.getBytes().length);
+    }
+
+    @Override
+    public void removeClass(JavaClass clazz) {
+        cache.remove(this, clazz.getClassName());
+    }
+
+    @Override
+    public JavaClass findClass(String className) {
+        return cache.get(this, className);
+    }
+
+    @Override
+    public JavaClass loadClass(String className) throws ClassNotFoundException {
+        if (className == null || className.equals(""))
+            throw new IllegalArgumentException("Invalid class name " + className);
+
+        className = className.replace('/', '.');
+
+        JavaClass found = cache.get(this, className);
+
+        if (found != null)
+            return found;
+
+        JavaClass parsed = parseClass(className);
+
+        if (parsed == null)
+            throw new ClassNotFoundException("Could not load " + className);
+
+        return parsed;
+    }
+
+    /**
+     * Same as loadClass, but returns null instead of throwing
+     * when class is not found or can not be parsed.
+     */
+    public JavaClass tryLoadClass(String className) {
+        className = className.replace('/', '.');
+
+        JavaClass found = cache.get(this, className);
+
+        if (found != null)
+            return found;
+
+        try {
+            return parseClass(className);
+        } catch (ClassNotFoundException | ClassFormatException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public JavaClass loadClass(Class clazz) throws ClassNotFoundException {
+        return loadClass(clazz.getName());
+    }
+
+    @Override
+    public void clear() {
+        cache.removeAll(this);
+    }
+
+    @Override
+    public ClassPath getClassPath() {
+        return classPath;
+    }
+
+    // parses and stores class, returns class stored by another thread if it was first
+    private JavaClass parseClass(String className) throws ClassNotFoundException {
+        InputStream stream = null;
+
+        GenerationStats.enter(GenerationStats.Phase.PARSE);
+        GenerationStats.increment(GenerationStats.Counter.CLASSES_PARSED);
+
+        try {
+            stream = classPath.getInputStream(className);
+
+            if (stream == null)
+                return null;
+
+            byte[] stripped = ClassFileStripper.strip(stream);
+
+            JavaClass parsed = new ClassParser(new ByteArrayInputStream(stripped), className).parse();
+            parsed.setRepository(this);
+
+            // nested type status is computed lazily, compute it before class is shared
+            parsed.isAnonymous();
+
+            return cache.putIfAbsent(this, parsed.getClassName(), parsed, stripped.length);
+        } catch (IOException e) {
+            throw new ClassNotFoundException("Exception while looking for class " + className + ": " + e, e);
+        } catch (BadParsingException e) {
+            throw new ClassFormatException("Could not parse " + className + ": " + e.getMessage());
+        } finally {
+            GenerationStats.exit();
+
+            if (stream != null) {
+                try {
+                    stream.close();
+                } catch (IOException e) {}
+            }
+        }
+    }
+}
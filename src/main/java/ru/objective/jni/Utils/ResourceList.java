@@ -19,8 +19,8 @@ package ru.objective.jni.utils;
 /**
  * Created by ashitikov on 18.01.16.
  */
-import org.apache.commons.bcel6.util.ClassPath;
 import org.apache.commons.io.IOUtils;
+import ru.objective.jni.constants.Constants;
 
 import java.io.File;
 import java.io.IOException;
@@ -28,7 +28,6 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Enumeration;
-import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
@@ -44,39 +43,23 @@ public class ResourceList{
     }
 
     /**
-     * for all elements of java.class.path get a Collection of resources Pattern
-     * pattern = Pattern.compile(".*"); gets all resources
+     * Lists class files of single classpath element, jar or directory.
      *
-     * @param pattern
-     *            the pattern to match
-     * @return the resources in the order they are found
+     * @param element
+     *            jar file or directory path
+     * @return class file names relative to the element root, slash separated
      */
-    public static Collection<String> getResources(ClassPath classPath,
-            final Pattern pattern){
-        final ArrayList<String> retval = new ArrayList<String>();
-        final String[] classPathElements = classPath.toString().split(File.pathSeparator);
-        for(final String element : classPathElements){
-            Collection<String> resources = getResources(element, pattern);
-
-            if (resources != null)
-                retval.addAll(resources);
-        }
-        return retval;
-    }
-
-    private static Collection<String> getResources(
-            final String element,
-            final Pattern pattern){
+    public static Collection<String> getClassFileNames(final String element){
         final ArrayList<String> retval = new ArrayList<String>();
         final File file = new File(element);
         if (!file.exists() || !file.canRead())
-            return null;
+            return retval;
 
         try {
             if (file.isDirectory()) {
-                retval.addAll(getResourcesFromDirectory(file, pattern));
+                getClassFileNamesFromDirectory(file, "", retval);
             } else {
-                retval.addAll(getResourcesFromJarFile(file, pattern));
+                getClassFileNamesFromJarFile(file, retval);
             }
         } catch (Error e) {
 
@@ -85,10 +68,9 @@ public class ResourceList{
         return retval;
     }
 
-    private static Collection<String> getResourcesFromJarFile(
+    private static void getClassFileNamesFromJarFile(
             final File file,
-            final Pattern pattern){
-        final ArrayList<String> retval = new ArrayList<String>();
+            final Collection<String> retval){
         ZipFile zf;
         try{
             zf = new ZipFile(file);
@@ -101,8 +83,7 @@ public class ResourceList{
         while(e.hasMoreElements()){
             final ZipEntry ze = (ZipEntry) e.nextElement();
             final String fileName = ze.getName();
-            final boolean accept = pattern.matcher(fileName).matches();
-            if(accept){
+            if(!ze.isDirectory() && fileName.endsWith(Constants.CLASS_SUFFIX)){
                 retval.add(fileName);
             }
         }
@@ -111,29 +92,22 @@ public class ResourceList{
         } catch(final IOException e1){
             throw new Error(e1);
         }
-        return retval;
     }
 
-    private static Collection<String> getResourcesFromDirectory(
+    private static void getClassFileNamesFromDirectory(
             final File directory,
-            final Pattern pattern){
-        final ArrayList<String> retval = new ArrayList<String>();
+            final String relativePath,
+            final Collection<String> retval){
         final File[] fileList = directory.listFiles();
+        if (fileList == null)
+            return;
         for(final File file : fileList){
+            final String fileName = relativePath + file.getName();
             if(file.isDirectory()){
-                retval.addAll(getResourcesFromDirectory(file, pattern));
-            } else{
-                try{
-                    final String fileName = file.getCanonicalPath();
-                    final boolean accept = pattern.matcher(fileName).matches();
-                    if(accept){
-                        retval.add(fileName);
-                    }
-                } catch(final IOException e){
-                    throw new Error(e);
-                }
+                getClassFileNamesFromDirectory(file, fileName + "/", retval);
+            } else if(fileName.endsWith(Constants.CLASS_SUFFIX)){
+                retval.add(fileName);
             }
         }
-        return retval;
     }
 }
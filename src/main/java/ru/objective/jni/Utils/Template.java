@@ -0,0 +1,108 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.objective.jni.utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Template parsed once into literal segments and ${KEY} slots.
+ * Rendering appends segments and slot values to output in a single pass.
+ */
+public class Template {
+
+    private static final String SLOT_START = "${";
+    private static final String SLOT_END = "}";
+
+    private static final ConcurrentHashMap<String, Template> resourceTemplates = new ConcurrentHashMap<>();
+
+    // literals.length == slots.length + 1, slot i is placed between literal i and i + 1
+    private final String[] literals;
+    private final String[] slots;
+
+    private Template(String[] literals, String[] slots) {
+        this.literals = literals;
+        this.slots = slots;
+    }
+
+    public static Template getResourceTemplate(String resourceName) throws IOException {
+        Template template = resourceTemplates.get(resourceName);
+
+        if (template == null) {
+            template = compile(ResourceList.getStringContentFromResource(resourceName));
+
+            Template existing = resourceTemplates.putIfAbsent(resourceName, template);
+
+            if (existing != null)
+                template = existing;
+        }
+
+        return template;
+    }
+
+    public static Template compile(String content) {
+        ArrayList<String> literals = new ArrayList<>();
+        ArrayList<String> slots = new ArrayList<>();
+
+        int position = 0;
+
+        while (true) {
+            int start = content.indexOf(SLOT_START, position);
+            int end = (start == -1 ? -1 : content.indexOf(SLOT_END, start + SLOT_START.length()));
+
+            if (end == -1) {
+                literals.add(content.substring(position));
+                break;
+            }
+
+            literals.add(content.substring(position, start));
+            slots.add(content.substring(start, end + SLOT_END.length()));
+
+            position = end + SLOT_END.length();
+        }
+
+        return new Template(literals.toArray(new String[literals.size()]), slots.toArray(new String[slots.size()]));
+    }
+
+    /**
+     * Slot value written straight to output, so big blocks are never kept as strings.
+     */
+    public interface Block {
+        void writeTo(Appendable output) throws IOException;
+    }
+
+    /**
+     * Appends template to output, replacing each slot with its value.
+     * Values are CharSequence or Block, slots without value are kept as is.
+     */
+    public void render(Appendable output, Map<String, ?> values) throws IOException {
+        output.append(literals[0]);
+
+        for (int i = 0; i < slots.length; i++) {
+            Object value = values.get(slots[i]);
+
+            if (value instanceof Block)
+                ((Block)value).writeTo(output);
+            else
+                output.append(value != null ? (CharSequence)value : slots[i]);
+
+            output.append(literals[i + 1]);
+        }
+    }
+}
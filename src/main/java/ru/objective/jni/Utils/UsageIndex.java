@@ -0,0 +1,185 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.objective.jni.utils;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Identifiers used by consumer Objective-C sources, tells which wrappers and members are referenced.
+ * Sources are not parsed, any occurrence of identifier counts, including comments and @selector.
+ * Member is used when every keyword of its selector is used, e.g. putWithKey and value for putWithKey:value:.
+ */
+public class UsageIndex {
+
+    private static final String[] EXTENSIONS = {".h", ".m", ".mm"};
+
+    private final HashSet<String> identifiers = new HashSet<>();
+    private int fileCount;
+
+    private final AtomicLong usedClasses = new AtomicLong();
+    private final AtomicLong skippedClasses = new AtomicLong();
+    private final AtomicLong keptMembers = new AtomicLong();
+    private final AtomicLong prunedMembers = new AtomicLong();
+
+    /**
+     * Scans sources in given files and dirs. Generated wrappers are not usages,
+     * so output dir is skipped when it is inside of scanned dir.
+     */
+    public void scan(String path, final Path outputDir) throws IOException {
+        final Path root = Paths.get(path).toAbsolutePath().normalize();
+        final Path skipped = (outputDir != null ? outputDir.toAbsolutePath().normalize() : null);
+
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                return (dir.equals(skipped) && !dir.equals(root) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE);
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (isSource(file.getFileName().toString()))
+                    addIdentifiers(Files.readAllBytes(file));
+
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static boolean isSource(String fileName) {
+        for (String extension : EXTENSIONS) {
+            if (fileName.endsWith(extension))
+                return true;
+        }
+
+        return false;
+    }
+
+    // identifiers are ASCII, so bytes are read as is regardless of file encoding
+    private void addIdentifiers(byte[] content) {
+        fileCount++;
+
+        StringBuilder identifier = new StringBuilder();
+
+        for (byte b : content) {
+            char c = (char)(b & 0xFF);
+
+            if (isIdentifierPart(c) && (identifier.length() > 0 || !Character.isDigit(c))) {
+                identifier.append(c);
+            } else if (identifier.length() > 0) {
+                identifiers.add(identifier.toString());
+                identifier.setLength(0);
+            }
+        }
+
+        if (identifier.length() > 0)
+            identifiers.add(identifier.toString());
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c == '$';
+    }
+
+    public int getFileCount() {
+        return fileCount;
+    }
+
+    /**
+     * Tells whether wrapper of requested class is referenced, counted for summary.
+     */
+    public boolean isClassUsed(String wrapperName) {
+        boolean used = identifiers.contains(wrapperName);
+
+        (used ? usedClasses : skippedClasses).incrementAndGet();
+
+        return used;
+    }
+
+    /**
+     * Tells whether member with any of given Objective-C declarations is referenced, counted for summary.
+     * Empty declarations, e.g. setters of final fields, are ignored.
+     */
+    public boolean isMemberUsed(String... declarations) {
+        boolean used = false;
+
+        for (String declaration : declarations) {
+            if (!declaration.isEmpty() && isDeclarationUsed(declaration)) {
+                used = true;
+                break;
+            }
+        }
+
+        (used ? keptMembers : prunedMembers).incrementAndGet();
+
+        return used;
+    }
+
+    private boolean isDeclarationUsed(String declaration) {
+        for (String keyword : getSelectorKeywords(declaration)) {
+            if (!identifiers.contains(keyword))
+                return false;
+        }
+
+        return true;
+    }
+
+    // "- (int)putWithKey:(id)key value:(id)value ;" -> putWithKey, value
+    static ArrayList<String> getSelectorKeywords(String declaration) {
+        ArrayList<String> result = new ArrayList<>();
+
+        // skip return type
+        int start = declaration.indexOf(')') + 1;
+
+        if (declaration.indexOf(':', start) == -1) {
+            int end = declaration.indexOf(';', start);
+
+            result.add(declaration.substring(start, (end == -1 ? declaration.length() : end)).trim());
+
+            return result;
+        }
+
+        for (int i = declaration.indexOf(':', start); i != -1; i = declaration.indexOf(':', i + 1)) {
+            int keywordStart = i;
+
+            while (keywordStart > start && isIdentifierPart(declaration.charAt(keywordStart - 1))) {
+                keywordStart--;
+            }
+
+            if (keywordStart < i)
+                result.add(declaration.substring(keywordStart, i));
+        }
+
+        return result;
+    }
+
+    public String getSummary() {
+        long members = keptMembers.get() + prunedMembers.get();
+
+        return String.format(Locale.US, "Usage: %d of %d requested classes referenced, %d of %d members kept (%.1f%% pruned)",
+                usedClasses.get(), usedClasses.get() + skippedClasses.get(), keptMembers.get(), members,
+                (members > 0 ? prunedMembers.get() * 100.0 / members : 0.0));
+    }
+}
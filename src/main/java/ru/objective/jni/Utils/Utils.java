@@ -25,12 +25,17 @@ import ru.objective.jni.annotations.OJNIExclude;
 import ru.objective.jni.annotations.OJNIExportName;
 import ru.objective.jni.constants.Constants;
 import ru.objective.jni.exceptions.BadParsingException;
+import ru.objective.jni.tasks.types.JavaType;
+import ru.objective.jni.tasks.types.MethodSignature;
 import sun.reflect.annotation.AnnotationType;
 
+import java.io.InputStream;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.zip.ZipEntry;
@@ -40,8 +45,14 @@ import java.util.zip.ZipEntry;
  */
 public class Utils {
 
+    // members of OJNIExportName, resolved once instead of per annotation
+    private static final Map<String, Class<?>> EXPORT_NAME_MEMBERS =
+            AnnotationType.getInstance(OJNIExportName.class).memberTypes();
+
+    private static final HashSet<String> OCCUPIED_OBJC_WORDS = new HashSet<>(Arrays.asList(Constants.OCCUPIED_OBJC_WORDS));
+
     public static String getDottedClassName(String className) {
-        String result = className.replace(Constants.CLASS_SUFFIX, "");
+        String result = removeAll(className, Constants.CLASS_SUFFIX);
 
         result = result.replace('/', '.');
         result = result.replace('\\', '.');
@@ -56,101 +67,95 @@ public class Utils {
     }
 
     public static String getShortClassName(String packageName, String className) {
-        String result = className.replace(packageName, "");
+        String result = removeAll(className, packageName);
 
-        return result.replace(".", "");
+        return removeAll(result, ".");
     }
 
     public static String getShortClassName(String className){
-        String[] splitted = className.split("\\.");
-
-        if (splitted == null || splitted.length == 0)
-            return null;
-
-        return splitted[splitted.length - 1];
+        return className.substring(className.lastIndexOf('.') + 1);
     }
 
     public static String getBasicType(String className) {
-        return className.replaceAll("\\[|\\]", "");
-    }
+        if (className.indexOf('[') == -1 && className.indexOf(']') == -1)
+            return className;
 
-    public static HashSet<Method> getOverloadedMethods(Method[] methods) {
-        HashSet<Method> result = new HashSet<>(methods.length);
+        StringBuilder result = new StringBuilder(className.length());
 
-        for (Method method : methods) {
+        for (int i = 0; i < className.length(); i++) {
+            char c = className.charAt(i);
 
-            if (Utils.getMethodExportInfo(method) == null)
-                continue;
+            if (c != '[' && c != ']')
+                result.append(c);
+        }
 
-            for (Method foundMethod : methods) {
+        return result.toString();
+    }
 
-                if (Utils.getMethodExportInfo(foundMethod) == null)
-                    continue;
+    // same as String.replace(value, ""), which compiles regex pattern on every call
+    private static String removeAll(String string, String value) {
+        if (value.isEmpty())
+            return string;
 
-                if (method.equals(foundMethod))
-                    continue;
+        int index = string.indexOf(value);
 
-                if (method.getName().equals(foundMethod.getName()) &&
-                        method.getArgumentTypes().length == foundMethod.getArgumentTypes().length) {
-                    result.add(method);
-                    break;
-                }
-            }
-        }
+        if (index == -1)
+            return string;
 
-        return result;
-    }
+        StringBuilder result = new StringBuilder(string.length());
+        int start = 0;
 
-    public static boolean isClassNameExcluded(String className, String[] excludes, String[] packages) {
+        do {
+            result.append(string, start, index);
+            start = index + value.length();
+            index = string.indexOf(value, start);
+        } while (index != -1);
 
-        String basicClassName = getBasicType(className);
+        result.append(string, start, string.length());
 
-        if (excludes != null) {
-            for (String excluded : excludes) {
-                if (basicClassName.equals(excluded))
-                    return true;
-            }
-        }
+        return result.toString();
+    }
 
-        if (packages != null) {
-            for (String excluded : packages) {
-                if (basicClassName.startsWith(excluded + "."))
-                    return true;
-            }
-        }
+    public static boolean isClassNameExcluded(String className, String[] excludes, String[] packages) {
+        GenerationStats.increment(GenerationStats.Counter.EXCLUSION_CHECKS);
+        GenerationStats.enter(GenerationStats.Phase.FILTER);
 
-        return false;
+        try {
+            return ExclusionMatcher.forRules(excludes, packages).isExcluded(className);
+        } finally {
+            GenerationStats.exit();
+        }
     }
 
-    public static boolean isExportClass(JavaClass javaClass, String[] excludes, String[] excludedPackages) throws ClassNotFoundException {
+    public static boolean isExportClass(JavaClass javaClass, String[] excludes, String[] excludedPackages) {
         if (javaClass.isAnonymous() || javaClass.isAnnotation() || javaClass.isSynthetic())
             return false;
 
-        if (isClassNameExcluded(javaClass.getClassName(), excludes, excludedPackages))
-            return false;
+        String superclassName = (isJavaSystemClass(javaClass.getClassName()) ? null : javaClass.getSuperclassName());
 
-        try {
-            JavaClass[] interfaces = javaClass.getAllInterfaces();
-            JavaClass[] supers = javaClass.getSuperClasses();
+        return isExportHierarchy(javaClass.getClassName(), superclassName, javaClass.getInterfaceNames(),
+                excludes, excludedPackages);
+    }
 
-            for (JavaClass superClass : supers) {
-                if (isClassNameExcluded(superClass.getClassName(), excludes, excludedPackages))
-                    return false;
-            }
+    public static boolean isExportClass(ClassFileInfo classInfo, String[] excludes, String[] excludedPackages) {
+        if (classInfo.isAnonymous() || classInfo.isAnnotation() || classInfo.isSynthetic())
+            return false;
 
-            for (JavaClass superInterface : interfaces) {
-                if (isClassNameExcluded(superInterface.getClassName(), excludes, excludedPackages))
-                    return false;
-            }
-        } catch (ClassNotFoundException cnf) {
-            System.out.println();
-            System.out.println("WARNING! One of superclass or interface of class " + javaClass.getClassName() +
-                    " does not included in classpath and will skip. Reason: " + cnf.getLocalizedMessage());
+        return isExportHierarchy(classInfo.getClassName(), classInfo.getSuperclassName(), classInfo.getInterfaceNames(),
+                excludes, excludedPackages);
+    }
 
-            return false; // ignore classes that does not included in classpath
-        }
+    private static boolean isExportHierarchy(String className, String superclassName, String[] interfaceNames,
+                                             String[] excludes, String[] excludedPackages) {
+        GenerationStats.increment(GenerationStats.Counter.EXPORT_CHECKS);
+        GenerationStats.enter(GenerationStats.Phase.FILTER);
 
-        return true;
+        try {
+            return OJNIClassLoader.getInstance().getClassHierarchy(excludes, excludedPackages)
+                    .isExportHierarchy(className, superclassName, interfaceNames);
+        } finally {
+            GenerationStats.exit();
+        }
     }
 
     public static String[] getContainedExportClasses(JarFile jarFile, String[] excludes, String[] excludedPackages) throws Exception {
@@ -163,8 +168,12 @@ public class Utils {
             String entryName = entry.getName();
 
             if (!entry.isDirectory() && entryName.endsWith(Constants.CLASS_SUFFIX)) {
-                // check this is export class
-                JavaClass parsed = OJNIClassLoader.getInstance().loadClass(entryName);
+                // check this is export class, header is enough for that
+                ClassFileInfo parsed;
+
+                try (InputStream stream = jarFile.getInputStream(entry)) {
+                    parsed = ClassFileReader.read(stream);
+                }
 
                 if (!isExportClass(parsed, excludes, excludedPackages))
                     continue;
@@ -188,13 +197,7 @@ public class Utils {
     }
 
     public static boolean isOccupiedWord(String word) {
-        for (String occupied : Constants.OCCUPIED_OBJC_WORDS) {
-            if (word.equals(occupied)) {
-                return true;
-            }
-        }
-
-        return false;
+        return OCCUPIED_OBJC_WORDS.contains(word);
     }
 
     public static String getFieldExportName(Field field) {
@@ -213,11 +216,9 @@ public class Utils {
 
                 ElementValuePair[] elementValuePairs = annotationEntry.getElementValuePairs();
 
-                AnnotationType annotationType = AnnotationType.getInstance(OJNIExportName.class);
-
                 for (ElementValuePair elementValuePair : elementValuePairs) {
 
-                    if (annotationType.memberTypes().get(elementValuePair.getNameString()) != null) {
+                    if (EXPORT_NAME_MEMBERS.containsKey(elementValuePair.getNameString())) {
                         return elementValuePair.getValue().stringifyValue();
                     }
                 }
@@ -248,11 +249,9 @@ public class Utils {
 
                 ElementValuePair[] elementValuePairs = annotationEntry.getElementValuePairs();
 
-                AnnotationType annotationType = AnnotationType.getInstance(OJNIExportName.class);
-
                 for (ElementValuePair elementValuePair : elementValuePairs) {
 
-                    if (annotationType.memberTypes().get(elementValuePair.getNameString()) != null) {
+                    if (EXPORT_NAME_MEMBERS.containsKey(elementValuePair.getNameString())) {
                         name = elementValuePair.getValue().stringifyValue();
                     }
                 }
@@ -285,20 +284,19 @@ public class Utils {
 
 
     public static ArrayList<String> getMethodNonPrimitiveDependencies(Method method) {
-        Type returnType = basicTypeFromArrayType(method.getReturnType());
-        Type[] argumentTypes = method.getArgumentTypes();
+        MethodSignature signature = MethodSignature.forSignature(method.getSignature());
+        JavaType returnType = signature.getReturnType();
 
         ArrayList<String> dependencies = new ArrayList<>();
 
-        for (Type argumentType : argumentTypes) {
-            argumentType = basicTypeFromArrayType(argumentType);
-            if (!isPrimitive(argumentType)) {
-                dependencies.add(argumentType.toString());
+        for (JavaType argumentType : signature.getArgumentTypes()) {
+            if (!argumentType.isPrimitive()) {
+                dependencies.add(argumentType.getBasicName());
             }
         }
 
-        if (!isPrimitive(returnType))
-            dependencies.add(returnType.toString());
+        if (!returnType.isPrimitive())
+            dependencies.add(returnType.getBasicName());
 
         if (dependencies.size() == 0)
             return null;
@@ -315,13 +313,7 @@ public class Utils {
     }
 
     public static boolean isPrimitive(Type type) {
-        try {
-            BasicType.getType(basicTypeFromArrayType(type).getType());
-
-            return true;
-        } catch (Exception e) {
-            return false;
-        }
+        return basicTypeFromArrayType(type) instanceof BasicType;
     }
 
     public static ClassPath[] classPathsFromStrings(String[] classPaths) {
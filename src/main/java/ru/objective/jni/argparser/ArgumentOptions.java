@@ -16,14 +16,24 @@
 
 package ru.objective.jni.argparser;
 
+import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
 /**
  * Created by ashitikov on 18.01.16.
  */
 public class ArgumentOptions {
     public final static Options ARGUMENT_OPTIONS = new Options();
 
+    // long names of options with file or dir values
+    public final static Set<String> PATH_OPTIONS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "classpath", "output", "output-archive", "member-rules", "usage", "batch")));
+
     static {
         constructOptions();
     }
@@ -33,10 +43,12 @@ public class ArgumentOptions {
         ARGUMENT_OPTIONS.addOption("version", "version", false, "Print Objective-JNI version");
 
         ARGUMENT_OPTIONS.addOption("exclude", "exclude", true, "Explicitely exclude java class. " +
-                "Objective-C wrapper will not be generated for that.");
+                "Objective-C wrapper will not be generated for that. Supports * and ** wildcards " +
+                "and regex: prefixed regular expressions.");
 
         ARGUMENT_OPTIONS.addOption("excludepackage", "excludepackage", true, "Explicitly excludes java package. " +
-                "Objective-C wrapper will not be generated for all types inside this package.");
+                "Objective-C wrapper will not be generated for all types inside this package. " +
+                "Supports * and ** wildcards and regex: prefixed regular expressions.");
 
         ARGUMENT_OPTIONS.addOption("classpath", "classpath", true, "Specify .jar classpath file " +
                 "to generate Objective-C wrapper.");
@@ -48,7 +60,67 @@ public class ArgumentOptions {
 
         ARGUMENT_OPTIONS.addOption("output", "output", true, "Specify output dir to put all generated wrappers to.");
 
+        ARGUMENT_OPTIONS.addOption("outputarchive", "output-archive", true, "Specify .zip, .tar or .tar.gz " +
+                "file to put all generated wrappers to instead of output dir.");
+
         ARGUMENT_OPTIONS.addOption("prefix", "prefix", true, "Specify class name prefix " +
                 "for each generated Objective-C wrapper.");
+
+        ARGUMENT_OPTIONS.addOption("threads", "threads", true, "Specify number of threads " +
+                "to generate wrappers with. Defaults to the number of available processors.");
+
+        Option amalgamate = new Option("amalgamate", "amalgamate", true, "Also generate unity .m files " +
+                "importing implementations of classes, one per package or per specified number of classes " +
+                "inside package. Compile them instead of separate .m files.");
+        amalgamate.setOptionalArg(true);
+        amalgamate.setArgName("package|N");
+        ARGUMENT_OPTIONS.addOption(amalgamate);
+
+        Option stats = new Option("stats", "stats", true, "Print time spent in generation phases " +
+                "and counters of classes, cache hits and written bytes as text or json. Defaults to text.");
+        stats.setOptionalArg(true);
+        stats.setArgName("text|json");
+        ARGUMENT_OPTIONS.addOption(stats);
+
+        ARGUMENT_OPTIONS.addOption("memberrules", "member-rules", true, "Specify file of rules including " +
+                "or excluding methods and fields by class, name, descriptor and visibility, e.g. " +
+                "exclude method name=*Deprecated*");
+
+        ARGUMENT_OPTIONS.addOption("usage", "usage", true, "Specify dir of consumer .h, .m and .mm sources. " +
+                "Only classes and members they reference are generated, with classes needed to compile them.");
+
+        Option maxDepth = new Option("maxdepth", "max-depth", true, "Generate full wrappers only for classes " +
+                "reachable through at most specified number of method and field types from requested ones. " +
+                "Classes one step further are generated as opaque wrappers without members.");
+        maxDepth.setArgName("N");
+        ARGUMENT_OPTIONS.addOption(maxDepth);
+
+        Option classCache = new Option("classcache", "class-cache", true, "Limit memory of parsed classes and class headers " +
+                "to specified number of megabytes, least recently used classes are parsed again when needed. " +
+                "Unlimited by default.");
+        classCache.setArgName("MB");
+        ARGUMENT_OPTIONS.addOption(classCache);
+
+        ARGUMENT_OPTIONS.addOption("incremental", "incremental", false, "Regenerate only wrappers of classes " +
+                "changed since previous generation into the same output dir.");
+
+        Option daemon = new Option("daemon", "daemon", true, "Start daemon on specified local port, keeping parsed " +
+                "classes warm between generations requested with --connect. Classes are reloaded when classpath changes. " +
+                "Requests must pass the token daemon writes to an owner-only file in ~/.objective-jni.");
+        daemon.setArgName("port");
+        ARGUMENT_OPTIONS.addOption(daemon);
+
+        Option connect = new Option("connect", "connect", true, "Run generation with the rest of options " +
+                "on daemon listening on specified local port.");
+        connect.setArgName("port");
+        ARGUMENT_OPTIONS.addOption(connect);
+
+        ARGUMENT_OPTIONS.addOption("shutdown", "shutdown", false, "Stop daemon specified with --connect.");
+
+        Option batch = new Option("batch", "batch", true, "Run generation jobs of specified file in one process, " +
+                "one line of options per job with paths relative to the file. Jobs with different outputs run " +
+                "concurrently, --threads limits number of concurrent jobs.");
+        batch.setArgName("file");
+        ARGUMENT_OPTIONS.addOption(batch);
     }
 }
@@ -18,6 +18,13 @@ package ru.objective.jni.argparser;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.Option;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Created by ashitikov on 27.11.15.
@@ -37,4 +44,41 @@ public class ArgumentParser extends DefaultParser {
         return parse(ArgumentOptions.ARGUMENT_OPTIONS, arguments);
     }
 
+    /**
+     * Arguments of parsed command line without skipped options, with relative paths resolved against baseDir.
+     * Output defaults to baseDir when neither output dir nor archive is specified, except for batch
+     * with outputs of its own jobs.
+     */
+    public static String[] toArguments(CommandLine cmd, Path baseDir, String... skippedOptions) {
+        List<String> skipped = Arrays.asList(skippedOptions);
+        ArrayList<String> result = new ArrayList<>();
+
+        for (Option option : cmd.getOptions()) {
+            String name = option.getLongOpt();
+
+            if (skipped.contains(name))
+                continue;
+
+            result.add("--" + name);
+
+            String[] values = option.getValues();
+
+            if (values == null)
+                continue;
+
+            for (String value : values) {
+                result.add(ArgumentOptions.PATH_OPTIONS.contains(name) ?
+                        baseDir.resolve(value).toAbsolutePath().normalize().toString() : value);
+            }
+        }
+
+        if (!cmd.hasOption("output") && !cmd.hasOption("output-archive") && !cmd.hasOption("batch")) {
+            result.add("--output");
+            result.add(baseDir.toAbsolutePath().normalize().toString());
+        }
+
+        Collections.addAll(result, cmd.getArgs());
+
+        return result.toArray(new String[result.size()]);
+    }
 }
@@ -34,12 +34,19 @@ public final class Constants {
     public static final String SUPERCLASS_NAME = "${SUPERCLASS_NAME}";
     public static final String DECLARATION_BLOCK = "${DECLARATION_BLOCK}";
     public static final String IMPLEMENTATION_BLOCK = "${IMPLEMENTATION_BLOCK}";
+    public static final String PACKAGE_NAME = "${PACKAGE_NAME}";
 
     public static final String TEMPLATE_HEADER_FILENAME = "OJNITemplate.h";
     public static final String TEMPLATE_IMPLEMENTATION_FILENAME = "OJNITemplate.m";
     public static final String TEMPLATE_INTERFACE_FILENAME = "OJNITemplateProtocol.h";
+    public static final String TEMPLATE_AMALGAMATION_FILENAME = "OJNITemplateAmalgamation.m";
     public static final String TEMPLATE_LICENSE_FILENAME = "LICENSE";
 
+    // followed by group number, '-' keeps it apart from wrapper names
+    public static final String AMALGAMATION_NAME = "Amalgamated-";
+
+    public static final String MANIFEST_FILENAME = ".ojni-manifest";
+
     public static final String TEMPLATE_IMPORT_KEY = "${TEMPLATE_IMPORT_KEY}";
     public static final String TEMPLATE_IMPORT = "#import \""+TEMPLATE_IMPORT_KEY+".h\"";
 
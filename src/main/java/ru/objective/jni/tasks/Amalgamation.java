@@ -0,0 +1,102 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.objective.jni.tasks;
+
+import ru.objective.jni.constants.Constants;
+import ru.objective.jni.utils.Template;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Collects implementation files of generated classes and writes unity files importing them,
+ * one per package or per group of classes inside package, e.g. java/util/ASAmalgamated-1.m
+ * Downstream build then compiles one translation unit per group instead of one per class.
+ * Files are grouped in name order, so groups do not depend on generation order.
+ */
+public class Amalgamation {
+
+    private final String prefix;
+    private final int groupSize;
+
+    // package dir -> implementation file names
+    private final TreeMap<String, TreeSet<String>> packages = new TreeMap<>();
+
+    public Amalgamation(String prefix, int groupSize) {
+        this.prefix = prefix;
+        this.groupSize = groupSize;
+    }
+
+    public synchronized void add(String relativePath) {
+        if (!relativePath.endsWith(".m"))
+            return;
+
+        int separator = relativePath.lastIndexOf('/');
+        String packagePath = relativePath.substring(0, separator);
+
+        TreeSet<String> files = packages.get(packagePath);
+
+        if (files == null) {
+            files = new TreeSet<>();
+            packages.put(packagePath, files);
+        }
+
+        files.add(relativePath.substring(separator + 1));
+    }
+
+    public synchronized void write(OutputWriter outputWriter) throws IOException {
+        Template template = Template.getResourceTemplate(Constants.TEMPLATE_AMALGAMATION_FILENAME);
+
+        for (Map.Entry<String, TreeSet<String>> entry : packages.entrySet()) {
+            String packagePath = entry.getKey();
+            ArrayList<String> files = new ArrayList<>(entry.getValue());
+
+            int groups = 0;
+
+            for (int start = 0; start < files.size(); start += groupSize) {
+                groups++;
+
+                StringBuilder importBlock = new StringBuilder();
+
+                for (String file : files.subList(start, Math.min(files.size(), start + groupSize))) {
+                    importBlock.append("#import \"").append(file).append("\"\n");
+                }
+
+                HashMap<String, Object> values = new HashMap<>();
+                values.put(Constants.PACKAGE_NAME, packagePath.replace('/', '.'));
+                values.put(Constants.IMPORT_BLOCK, importBlock);
+
+                try (Writer writer = outputWriter.open(getRelativePath(packagePath, groups), Charset.defaultCharset())) {
+                    template.render(writer, values);
+                }
+            }
+
+            // groups left from previous generation with more classes
+            while (outputWriter.delete(getRelativePath(packagePath, ++groups))) {}
+        }
+    }
+
+    private String getRelativePath(String packagePath, int group) {
+        return packagePath + "/" + prefix + Constants.AMALGAMATION_NAME + group + ".m";
+    }
+}
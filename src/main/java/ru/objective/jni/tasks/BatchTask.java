@@ -0,0 +1,390 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.objective.jni.tasks;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.ParseException;
+import ru.objective.jni.argparser.ArgumentParser;
+import ru.objective.jni.exceptions.BadParsingException;
+import ru.objective.jni.utils.GenerationStats;
+import ru.objective.jni.utils.OJNIClassLoader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs generation jobs of batch file in one process, one line of options per job:
+ *
+ *   # comment
+ *   --classpath libs/a.jar --package com.a --prefix A --output out/a
+ *   --classpath libs/b.jar --class com.b.B --prefix B \
+ *       --output out/b
+ *
+ * Paths are relative to batch file, output defaults to its dir.
+ * Jobs with the same classpaths share class loader, so their classes are indexed and parsed once,
+ * system classes and class cache are shared by all jobs.
+ * Jobs writing to the same output run one by one in file order, the others run concurrently.
+ * Output of each job is printed at once when it is finished.
+ */
+public class BatchTask implements ITask {
+
+    // options of whole batch or of single process
+    private static final List<String> FORBIDDEN_JOB_OPTIONS = Arrays.asList("batch", "help", "version",
+            "daemon", "connect", "shutdown", "stats", "class-cache");
+
+    private static class Job {
+        final int number;
+        final int line;
+        final String text;
+        final ArrayList<String> arguments;
+        // output dir or archive
+        final String output;
+        final List<String> classPaths;
+
+        final ByteArrayOutputStream log = new ByteArrayOutputStream();
+
+        Job(int number, int line, String text, ArrayList<String> arguments, String output, List<String> classPaths) {
+            this.number = number;
+            this.line = line;
+            this.text = text;
+            this.arguments = arguments;
+            this.output = output;
+            this.classPaths = classPaths;
+        }
+    }
+
+    // writes to log of job running on current thread, or to console outside of jobs
+    private static class JobOutputStream extends OutputStream {
+        private final OutputStream console;
+        private final InheritableThreadLocal<ByteArrayOutputStream> log;
+
+        JobOutputStream(OutputStream console, InheritableThreadLocal<ByteArrayOutputStream> log) {
+            this.console = console;
+            this.log = log;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            ByteArrayOutputStream target = log.get();
+
+            if (target != null)
+                target.write(b);
+            else
+                console.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ByteArrayOutputStream target = log.get();
+
+            if (target != null)
+                target.write(b, off, len);
+            else
+                console.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            console.flush();
+        }
+    }
+
+    private final Path file;
+    private final int threads;
+    private final String classCacheSize;
+
+    private String statsFormat;
+
+    private final InheritableThreadLocal<ByteArrayOutputStream> jobLog = new InheritableThreadLocal<>();
+    private final AtomicInteger failedJobs = new AtomicInteger();
+
+    private PrintStream console;
+
+    /**
+     * @param threads maximum number of concurrent jobs
+     * @param classCacheSize --class-cache value shared by all jobs, null for unlimited
+     */
+    public BatchTask(Path file, int threads, String classCacheSize) {
+        if (threads <= 0)
+            throw new IllegalArgumentException("--threads expects positive number");
+
+        this.file = file;
+        this.threads = threads;
+        this.classCacheSize = classCacheSize;
+    }
+
+    /**
+     * Stats of all jobs together, text, json or null to skip them.
+     */
+    public void setStatsFormat(String statsFormat) {
+        if (statsFormat != null && !statsFormat.equals("text") && !statsFormat.equals("json"))
+            throw new IllegalArgumentException("Unknown stats format " + statsFormat + ", expected text or json");
+
+        this.statsFormat = statsFormat;
+    }
+
+    @Override
+    public void run() throws Exception {
+        List<Job> jobs = readJobs();
+
+        if (jobs.isEmpty())
+            throw new IllegalArgumentException("Batch file " + file + " has no jobs");
+
+        LinkedHashMap<String, List<Job>> outputs = new LinkedHashMap<>();
+        HashMap<List<String>, OJNIClassLoader> loaders = new HashMap<>();
+
+        for (Job job : jobs) {
+            List<Job> outputJobs = outputs.get(job.output);
+
+            if (outputJobs == null) {
+                outputJobs = new ArrayList<>();
+                outputs.put(job.output, outputJobs);
+            }
+
+            outputJobs.add(job);
+
+            if (!loaders.containsKey(job.classPaths))
+                loaders.put(job.classPaths, new OJNIClassLoader());
+        }
+
+        int concurrentJobs = Math.min(threads, outputs.size());
+        // processors are split between concurrent jobs unless job sets its own threads
+        String jobThreads = String.valueOf(Math.max(1, Runtime.getRuntime().availableProcessors() / concurrentJobs));
+
+        for (Job job : jobs) {
+            if (!job.arguments.contains("--threads"))
+                Collections.addAll(job.arguments, "--threads", jobThreads);
+        }
+
+        System.out.println("Running " + jobs.size() + " batch jobs of " + file + ", " + concurrentJobs + " at once");
+
+        if (statsFormat != null)
+            GenerationStats.start();
+
+        long start = System.nanoTime();
+
+        console = System.out;
+        PrintStream consoleErr = System.err;
+
+        System.setOut(new PrintStream(new JobOutputStream(console, jobLog), true));
+        System.setErr(new PrintStream(new JobOutputStream(consoleErr, jobLog), true));
+
+        ExecutorService executor = Executors.newFixedThreadPool(concurrentJobs);
+
+        try {
+            ArrayList<Future<?>> futures = new ArrayList<>();
+
+            for (final List<Job> outputJobs : outputs.values()) {
+                final OJNIClassLoader[] jobLoaders = new OJNIClassLoader[outputJobs.size()];
+
+                for (int i = 0; i < jobLoaders.length; i++) {
+                    jobLoaders[i] = loaders.get(outputJobs.get(i).classPaths);
+                }
+
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int i = 0; i < jobLoaders.length; i++) {
+                            runJob(outputJobs.get(i), jobLoaders[i]);
+                        }
+                    }
+                }));
+            }
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+
+            System.setOut(console);
+            System.setErr(consoleErr);
+
+            if (statsFormat != null)
+                GenerationStats.stop();
+
+            for (OJNIClassLoader loader : loaders.values()) {
+                loader.clear();
+            }
+        }
+
+        System.out.println("Batch finished in " + (System.nanoTime() - start) / 1000000 + " ms, " +
+                failedJobs.get() + " of " + jobs.size() + " jobs failed");
+
+        if (statsFormat != null)
+            System.out.println(statsFormat.equals("json") ? GenerationStats.getJsonReport() : GenerationStats.getTextReport());
+
+        if (failedJobs.get() > 0)
+            throw new IllegalStateException(failedJobs.get() + " of " + jobs.size() + " batch jobs failed");
+    }
+
+    private void runJob(Job job, OJNIClassLoader loader) {
+        long start = System.nanoTime();
+        boolean failed = false;
+
+        // inherited by generation threads of job, see DefaultTask
+        OJNIClassLoader.setCurrent(loader);
+        jobLog.set(job.log);
+
+        try {
+            new TaskManager().run(new ArgumentParser(job.arguments.toArray(new String[job.arguments.size()])).parse());
+        } catch (Throwable e) {
+            e.printStackTrace();
+            failed = true;
+        } finally {
+            System.out.flush();
+            System.err.flush();
+
+            jobLog.remove();
+            OJNIClassLoader.setCurrent(null);
+        }
+
+        long millis = (System.nanoTime() - start) / 1000000;
+
+        if (failed)
+            failedJobs.incrementAndGet();
+
+        synchronized (console) {
+            console.println("Job " + job.number + " (line " + job.line + "): " + job.text);
+            console.write(job.log.toByteArray(), 0, job.log.size());
+            console.println(failed ? "ERROR! Job " + job.number + " failed in " + millis + " ms" :
+                    "Job " + job.number + " finished in " + millis + " ms");
+        }
+    }
+
+    private List<Job> readJobs() throws Exception {
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        Path baseDir = file.toAbsolutePath().getParent();
+
+        ArrayList<Job> result = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        int jobLine = 0;
+
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+
+            if (text.length() == 0)
+                jobLine = i + 1;
+
+            // trailing backslash continues job on the next line
+            if (line.endsWith("\\") && i < lines.size() - 1) {
+                text.append(line, 0, line.length() - 1).append(' ');
+                continue;
+            }
+
+            text.append(line);
+
+            String jobText = text.toString().trim();
+            text.setLength(0);
+
+            if (jobText.isEmpty() || jobText.startsWith("#"))
+                continue;
+
+            try {
+                result.add(parseJob(result.size() + 1, jobLine, jobText, baseDir));
+            } catch (ParseException | IllegalArgumentException e) {
+                throw new BadParsingException(file + ":" + jobLine + ": " + e.getMessage());
+            }
+        }
+
+        return result;
+    }
+
+    private Job parseJob(int number, int line, String text, Path baseDir) throws Exception {
+        CommandLine cmd = new ArgumentParser(tokenize(text)).parse();
+
+        for (String option : FORBIDDEN_JOB_OPTIONS) {
+            if (cmd.hasOption(option))
+                throw new IllegalArgumentException("--" + option + " could not be used in batch job");
+        }
+
+        ArrayList<String> arguments = new ArrayList<>(Arrays.asList(ArgumentParser.toArguments(cmd, baseDir)));
+
+        if (classCacheSize != null)
+            Collections.addAll(arguments, "--class-cache", classCacheSize);
+
+        String output = baseDir.resolve(cmd.getOptionValue("output-archive", cmd.getOptionValue("output", ".")))
+                .toAbsolutePath().normalize().toString();
+
+        ArrayList<String> classPaths = new ArrayList<>();
+        String[] values = cmd.getOptionValues("classpath");
+
+        if (values != null) {
+            for (String value : values) {
+                classPaths.add(baseDir.resolve(value).toAbsolutePath().normalize().toString());
+            }
+        }
+
+        return new Job(number, line, text, arguments, output, classPaths);
+    }
+
+    // splits options by whitespace, single or double quotes keep value with spaces together
+    static String[] tokenize(String text) {
+        ArrayList<String> result = new ArrayList<>();
+        StringBuilder token = null;
+        char quote = 0;
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+
+            if (quote != 0) {
+                if (c == quote)
+                    quote = 0;
+                else
+                    token.append(c);
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+
+                if (token == null)
+                    token = new StringBuilder();
+            } else if (Character.isWhitespace(c)) {
+                if (token != null) {
+                    result.add(token.toString());
+                    token = null;
+                }
+            } else {
+                if (token == null)
+                    token = new StringBuilder();
+
+                token.append(c);
+            }
+        }
+
+        if (quote != 0)
+            throw new IllegalArgumentException("Unclosed " + quote + " quote");
+
+        if (token != null)
+            result.add(token.toString());
+
+        return result.toArray(new String[result.size()]);
+    }
+}
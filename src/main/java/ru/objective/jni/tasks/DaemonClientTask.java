@@ -0,0 +1,96 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.objective.jni.tasks;
+
+import org.apache.commons.cli.CommandLine;
+import ru.objective.jni.argparser.ArgumentParser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Paths;
+
+/**
+ * Sends command line to daemon started with --daemon and prints its output.
+ * Relative paths are resolved against working dir of the client, not of the daemon.
+ */
+public class DaemonClientTask implements ITask {
+
+    private final int port;
+    private final String[] arguments;
+
+    public DaemonClientTask(int port, CommandLine cmd) {
+        this.port = port;
+        // default output dir of daemon is its own working dir, so output defaults to client one
+        this.arguments = ArgumentParser.toArguments(cmd, Paths.get(""), "connect");
+    }
+
+    @Override
+    public void run() throws Exception {
+        String token = DaemonProtocol.readToken(port);
+        int status;
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+            DaemonProtocol.writeRequest(output, token, arguments);
+
+            status = readResponse(input);
+        }
+
+        if (status != 0)
+            throw new IOException("Daemon request failed with status " + status);
+    }
+
+    private static int readResponse(DataInputStream input) throws IOException {
+        byte[] buffer = new byte[8192];
+
+        while (true) {
+            byte type = input.readByte();
+
+            if (type == DaemonProtocol.FRAME_EXIT) {
+                System.out.flush();
+                System.err.flush();
+
+                return input.readInt();
+            }
+
+            PrintStream stream;
+
+            if (type == DaemonProtocol.FRAME_OUT)
+                stream = System.out;
+            else if (type == DaemonProtocol.FRAME_ERR)
+                stream = System.err;
+            else
+                throw new IOException("Unexpected daemon response frame " + type);
+
+            int length = input.readInt();
+
+            if (length > buffer.length)
+                buffer = new byte[length];
+
+            input.readFully(buffer, 0, length);
+            stream.write(buffer, 0, length);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.objective.jni.tasks;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.EnumSet;
+
+/**
+ * Wire format between daemon and its clients over local socket.
+ * Request is arguments count followed by UTF arguments, one request per connection.
+ * Response is sequence of frames: type byte, then length and bytes of standard output or error,
+ * or exit status for the last frame.
+ */
+final class DaemonProtocol {
+
+    static final byte FRAME_OUT = 'O';
+    static final byte FRAME_ERR = 'E';
+    static final byte FRAME_EXIT = 'X';
+
+    private DaemonProtocol() {}
+
+    // readable only by the user who started daemon, so other local users could not send requests
+    static Path getTokenPath(int port) {
+        return Paths.get(System.getProperty("user.home"), ".objective-jni", "daemon-" + port + ".token");
+    }
+
+    /**
+     * Writes new random token to owner-only token file of given port.
+     */
+    static String createToken(int port) throws IOException {
+        byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+
+        StringBuilder token = new StringBuilder(bytes.length * 2);
+
+        for (byte b : bytes) {
+            token.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+
+        Path path = getTokenPath(port);
+        boolean posix = path.getFileSystem().supportedFileAttributeViews().contains("posix");
+
+        if (posix)
+            Files.createDirectories(path.getParent(), PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        else
+            Files.createDirectories(path.getParent());
+
+        // previous daemon could be killed, new file is created to be sure nobody else could have opened it
+        Files.deleteIfExists(path);
+
+        FileAttribute<?>[] attributes = (posix ?
+                new FileAttribute<?>[] {PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------"))} :
+                new FileAttribute<?>[0]);
+
+        try (SeekableByteChannel channel = Files.newByteChannel(path,
+                EnumSet.of(StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE), attributes)) {
+            channel.write(ByteBuffer.wrap(token.toString().getBytes(StandardCharsets.US_ASCII)));
+        }
+
+        return token.toString();
+    }
+
+    static String readToken(int port) throws IOException {
+        Path path = getTokenPath(port);
+
+        try {
+            return new String(Files.readAllBytes(path), StandardCharsets.US_ASCII).trim();
+        } catch (NoSuchFileException e) {
+            throw new IOException("No daemon token " + path + ", daemon is not started on port " + port + " by this user");
+        }
+    }
+
+    static void deleteToken(int port) throws IOException {
+        Files.deleteIfExists(getTokenPath(port));
+    }
+
+    static void writeRequest(DataOutputStream output, String token, String[] arguments) throws IOException {
+        output.writeUTF(token);
+        output.writeInt(arguments.length);
+
+        for (String argument : arguments) {
+            output.writeUTF(argument);
+        }
+
+        output.flush();
+    }
+
+    /**
+     * Reads token the request starts with and compares it in constant time.
+     */
+    static boolean readToken(DataInputStream input, String token) throws IOException {
+        byte[] received = input.readUTF().getBytes(StandardCharsets.UTF_8);
+
+        return MessageDigest.isEqual(received, token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String[] readRequest(DataInputStream input) throws IOException {
+        int count = input.readInt();
+
+        if (count < 0)
+            throw new IOException("Invalid daemon request arguments count " + count);
+
+        String[] result = new String[count];
+
+        for (int i = 0; i < count; i++) {
+            result[i] = input.readUTF();
+        }
+
+        return result;
+    }
+
+    static void writeExit(DataOutputStream output, int status) throws IOException {
+        synchronized (output) {
+            output.writeByte(FRAME_EXIT);
+            output.writeInt(status);
+            output.flush();
+        }
+    }
+
+    /**
+     * Sends everything written to it as frames of given type, shared by generator threads.
+     */
+    static class FrameOutputStream extends OutputStream {
+
+        private final DataOutputStream output;
+        private final byte type;
+
+        FrameOutputStream(DataOutputStream output, byte type) {
+            this.output = output;
+            this.type = type;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte)b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0)
+                return;
+
+            synchronized (output) {
+                output.writeByte(type);
+                output.writeInt(len);
+                output.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (output) {
+                output.flush();
+            }
+        }
+    }
+}
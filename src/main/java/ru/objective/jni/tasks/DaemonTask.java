@@ -0,0 +1,150 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.objective.jni.tasks;
+
+import org.apache.commons.cli.CommandLine;
+import ru.objective.jni.argparser.ArgumentParser;
+import ru.objective.jni.utils.OJNIClassLoader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Serves generation requests of DaemonClientTask in one long living JVM,
+ * so parsed classes, classpath indexes and templates stay warm between requests.
+ * Classes are reloaded only when classpaths change, see OJNIClassLoader.setClassPaths.
+ *
+ * Listens on loopback only. Requests are served one by one,
+ * because standard output of generator is redirected to the client.
+ */
+public class DaemonTask implements ITask {
+
+    // unauthorized or stalled client should not hold daemon for long
+    private static final int REQUEST_TIMEOUT = 10000;
+
+    private final int port;
+    private String token;
+
+    public DaemonTask(int port) {
+        this.port = port;
+    }
+
+    @Override
+    public void run() throws Exception {
+        // requests share default loader, which has to notice changed classpaths
+        OJNIClassLoader.getInstance().setTrackClassPaths(true);
+
+        try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            token = DaemonProtocol.createToken(port);
+
+            System.out.println("Objective-JNI daemon is listening on " + server.getLocalSocketAddress());
+
+            try {
+                boolean running = true;
+
+                while (running) {
+                    try (Socket socket = server.accept()) {
+                        running = serve(socket);
+                    } catch (IOException e) {
+                        System.out.println("ERROR! Daemon request failed: " + e.getMessage());
+                    }
+                }
+            } finally {
+                DaemonProtocol.deleteToken(port);
+            }
+
+            System.out.println("Objective-JNI daemon is stopped");
+        }
+    }
+
+    // returns false on shutdown request
+    private boolean serve(Socket socket) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+        socket.setSoTimeout(REQUEST_TIMEOUT);
+
+        if (!DaemonProtocol.readToken(input, token)) {
+            DaemonProtocol.FrameOutputStream err = new DaemonProtocol.FrameOutputStream(output, DaemonProtocol.FRAME_ERR);
+            err.write("Daemon request is rejected: wrong token\n".getBytes(StandardCharsets.UTF_8));
+            DaemonProtocol.writeExit(output, 1);
+
+            System.out.println("ERROR! Daemon request with wrong token is rejected");
+
+            return true;
+        }
+
+        String[] arguments = DaemonProtocol.readRequest(input);
+
+        // generation could take longer, while client waits for response
+        socket.setSoTimeout(0);
+
+        PrintStream console = System.out;
+        PrintStream consoleErr = System.err;
+
+        PrintStream out = new PrintStream(new BufferedOutputStream(
+                new DaemonProtocol.FrameOutputStream(output, DaemonProtocol.FRAME_OUT)), true);
+        PrintStream err = new PrintStream(new BufferedOutputStream(
+                new DaemonProtocol.FrameOutputStream(output, DaemonProtocol.FRAME_ERR)), true);
+
+        long start = System.nanoTime();
+        boolean shutdown = false;
+        int status = 0;
+
+        System.setOut(out);
+        System.setErr(err);
+
+        try {
+            CommandLine cmd = new ArgumentParser(arguments).parse();
+
+            if (cmd.hasOption("daemon") || cmd.hasOption("connect"))
+                throw new IllegalArgumentException("--daemon and --connect could not be sent to daemon");
+
+            if (cmd.hasOption("shutdown")) {
+                shutdown = true;
+                System.out.println("Objective-JNI daemon is shutting down");
+            } else {
+                new TaskManager().run(cmd);
+            }
+        } catch (Throwable e) {
+            e.printStackTrace();
+            status = 1;
+        } finally {
+            System.setOut(console);
+            System.setErr(consoleErr);
+
+            out.flush();
+            err.flush();
+        }
+
+        DaemonProtocol.writeExit(output, status);
+
+        console.println("Request " + Arrays.toString(arguments) + " finished with status " + status +
+                " in " + (System.nanoTime() - start) / 1000000 + " ms");
+
+        return !shutdown;
+    }
+}
@@ -17,21 +17,32 @@
 package ru.objective.jni.tasks;
 
 import org.apache.commons.bcel6.classfile.JavaClass;
+import ru.objective.jni.utils.GenerationStats;
+import ru.objective.jni.utils.MemberRules;
 import ru.objective.jni.utils.OJNIClassLoader;
 import ru.objective.jni.utils.ResourceList;
+import ru.objective.jni.utils.UsageIndex;
 import ru.objective.jni.utils.Utils;
 import ru.objective.jni.constants.Constants;
 import ru.objective.jni.tasks.builders.AbstractBuilder;
 import ru.objective.jni.tasks.builders.ClassBuilder;
 import ru.objective.jni.tasks.builders.InterfaceBuilder;
+import ru.objective.jni.tasks.builders.StubBuilder;
 
 import java.io.IOException;
+import java.io.Writer;
 import java.nio.charset.Charset;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.jar.JarFile;
 
 /**
@@ -39,6 +50,19 @@ import java.util.jar.JarFile;
  */
 public class DefaultTask implements ITask {
 
+    // class scheduled by name is loaded right before generation, so pending classes are not held in memory
+    private static final class PendingClass {
+        final String className;
+        final JavaClass javaClass;
+        final int depth;
+
+        PendingClass(String className, JavaClass javaClass, int depth) {
+            this.className = className;
+            this.javaClass = javaClass;
+            this.depth = depth;
+        }
+    }
+
     private String[] classPaths;
     private String[] excludes;
     private String[] classes;
@@ -47,10 +71,42 @@ public class DefaultTask implements ITask {
 
     private String output;
     private String prefix;
-
-    private ArrayList<String> generatedClasses = new ArrayList<>();
-
-    public DefaultTask(String[] classPaths, String[] excludes, String[] excludedPackages, String[] classes, String[] packages, String output, String prefix) {
+    private int threads;
+    private boolean incremental;
+
+    // text or json, null when stats are not collected
+    private String statsFormat;
+
+    // classes deeper than that are generated as opaque stubs, -1 when unlimited
+    private int maxDepth = -1;
+
+    // rules of exported members, null to export all
+    private MemberRules memberRules;
+
+    // consumer sources to generate only referenced classes and members for, null to generate all
+    private String[] usagePaths;
+    private UsageIndex usage;
+
+    private GenerationManifest manifest;
+    private Amalgamation amalgamation;
+    // archive to write into instead of output dir, null for output dir
+    private OutputArchive outputArchive;
+    // started by parseClasses, so failed option setters leave no writer thread behind
+    private OutputWriter outputWriter;
+    // scheduled classes and their least depth, all classes have depth 0 when depth is unlimited
+    private ConcurrentHashMap<String, Integer> generatedClasses = new ConcurrentHashMap<>();
+    private ArrayDeque<PendingClass> pendingWorklist = new ArrayDeque<>();
+
+    // classes are generated level by level, so every class is generated at its least depth
+    private volatile int currentDepth;
+    private ArrayList<PendingClass> deferredClasses = new ArrayList<>();
+
+    private ExecutorService executor;
+    private final AtomicInteger pendingClasses = new AtomicInteger();
+    private final Object pendingLock = new Object();
+    private Throwable failure;
+
+    public DefaultTask(String[] classPaths, String[] excludes, String[] excludedPackages, String[] classes, String[] packages, String output, String outputArchive, String prefix, int threads, boolean incremental, int amalgamationSize) throws IOException {
         this.classPaths = classPaths;
         this.excludes = excludes;
         this.classes = classes;
@@ -58,84 +114,322 @@ public class DefaultTask implements ITask {
         this.output = output;
         this.prefix = prefix;
         this.excludedPackages = excludedPackages;
+        this.threads = threads;
+        this.incremental = incremental;
+
+        if (amalgamationSize > 0)
+            this.amalgamation = new Amalgamation(prefix, amalgamationSize);
+
+        // archive file is opened only on commit, here only its type is checked
+        if (outputArchive != null)
+            this.outputArchive = OutputArchive.create(Paths.get(outputArchive));
+    }
+
+    public void setStatsFormat(String statsFormat) {
+        if (statsFormat != null && !statsFormat.equals("text") && !statsFormat.equals("json"))
+            throw new IllegalArgumentException("Unknown stats format " + statsFormat + ", expected text or json");
+
+        this.statsFormat = statsFormat;
+    }
+
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    public void setMemberRules(MemberRules memberRules) {
+        this.memberRules = memberRules;
+    }
+
+    public void setUsagePaths(String[] usagePaths) {
+        this.usagePaths = usagePaths;
     }
 
     @Override
     public void run() throws Exception {
-        parseClasses();
+        if (statsFormat == null) {
+            parseClasses();
+            return;
+        }
+
+        GenerationStats.start();
+
+        try {
+            parseClasses();
+        } finally {
+            GenerationStats.stop();
+        }
+
+        System.out.println(statsFormat.equals("json") ? GenerationStats.getJsonReport() : GenerationStats.getTextReport());
+    }
+
+    private void parseClass(JavaClass parsedClass, int depth) throws Exception {
+        if (markScheduled(parsedClass.getClassName(), depth))
+            schedule(new PendingClass(parsedClass.getClassName(), parsedClass, depth));
+    }
+
+    private void parseClass(String className, int depth) throws Exception {
+        className = Utils.getDottedClassName(Utils.getBasicType(className));
+
+        if (markScheduled(className, depth))
+            schedule(new PendingClass(className, null, depth));
     }
 
-    private void parseClass(JavaClass parsedClass) throws Exception {
-        if (generatedClasses.indexOf(parsedClass.getClassName()) == -1) {
-            generatedClasses.add(parsedClass.getClassName());
+    // true when class is not scheduled yet or was scheduled deeper, in the next level
+    private boolean markScheduled(String className, int depth) {
+        while (true) {
+            Integer previous = generatedClasses.putIfAbsent(className, depth);
+
+            if (previous == null)
+                return true;
+
+            if (depth >= previous)
+                return false;
+
+            if (generatedClasses.replace(className, previous, depth))
+                return true;
+        }
+    }
+
+    private void schedule(PendingClass pendingClass) {
+        if (pendingClass.depth > currentDepth) {
+            synchronized (pendingLock) {
+                deferredClasses.add(pendingClass);
+            }
+        } else if (executor != null) {
+            submitClass(pendingClass);
         } else {
+            pendingWorklist.addLast(pendingClass);
+        }
+    }
+
+    private void submitClass(final PendingClass pendingClass) {
+        pendingClasses.incrementAndGet();
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (getFailure() == null)
+                        generateClass(getJavaClass(pendingClass), pendingClass.depth);
+                } catch (Throwable e) {
+                    synchronized (pendingLock) {
+                        if (failure == null)
+                            failure = e;
+                    }
+                } finally {
+                    if (pendingClasses.decrementAndGet() == 0) {
+                        synchronized (pendingLock) {
+                            pendingLock.notifyAll();
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    private Throwable getFailure() {
+        synchronized (pendingLock) {
+            return failure;
+        }
+    }
+
+    // generates all pending classes and their dependencies of the current depth
+    private void awaitClasses() throws Exception {
+        if (executor == null) {
+            PendingClass next;
+
+            while ((next = pendingWorklist.pollFirst()) != null) {
+                generateClass(getJavaClass(next), next.depth);
+            }
+
             return;
         }
 
+        synchronized (pendingLock) {
+            while (pendingClasses.get() != 0) {
+                pendingLock.wait();
+            }
+
+            if (failure instanceof Exception)
+                throw (Exception)failure;
+            else if (failure != null)
+                throw (Error)failure;
+        }
+    }
+
+    // generates classes of next depths until there are no more dependencies
+    private void awaitDeferredClasses() throws Exception {
+        while (true) {
+            awaitClasses();
+
+            ArrayList<PendingClass> next;
+
+            synchronized (pendingLock) {
+                if (deferredClasses.isEmpty())
+                    return;
+
+                next = deferredClasses;
+                deferredClasses = new ArrayList<>();
+                currentDepth++;
+            }
+
+            for (PendingClass pendingClass : next) {
+                // skip classes already generated at lesser depth
+                if (generatedClasses.get(pendingClass.className) == pendingClass.depth)
+                    schedule(pendingClass);
+            }
+        }
+    }
+
+    private void generateClass(JavaClass parsedClass, int depth) throws Exception {
+        GenerationStats.increment(GenerationStats.Counter.CLASSES_VISITED);
+
+        String fingerprint = null;
+
+        if (manifest != null) {
+            fingerprint = manifest.fingerprint(parsedClass);
+
+            GenerationManifest.Entry entry = manifest.getReusableEntry(parsedClass.getClassName(), fingerprint);
+
+            if (entry != null) {
+                GenerationStats.increment(GenerationStats.Counter.CLASSES_REUSED);
+
+                manifest.put(parsedClass.getClassName(), entry);
+
+                addAmalgamated(Arrays.asList(entry.outputs));
+
+                for (String dependency : entry.dependencies) {
+                    parseClass(dependency, depth);
+                }
+
+                return;
+            }
+        }
+
         AbstractBuilder builder = null;
+        boolean stub = (maxDepth >= 0 && depth > maxDepth);
 
-        if (parsedClass.isInterface()) {
-            builder = new InterfaceBuilder(parsedClass, prefix, excludes, excludedPackages);
+        if (stub) {
+            builder = new StubBuilder(parsedClass, prefix, excludes, excludedPackages);
+        } else if (parsedClass.isInterface()) {
+            builder = new InterfaceBuilder(parsedClass, prefix, excludes, excludedPackages, memberRules, usage);
         }
         else {
-            builder = new ClassBuilder(parsedClass, prefix, excludes, excludedPackages);
+            builder = new ClassBuilder(parsedClass, prefix, excludes, excludedPackages, memberRules, usage);
         }
 
+        String packageName = parsedClass.getPackageName();
+
+        // emit as soon as built, only dependencies are kept for scheduling
+        ArrayList<String> outputs = generate(packageName, Utils.getShortClassName(packageName, parsedClass.getClassName()),
+                builder);
+
+        GenerationStats.increment(GenerationStats.Counter.CLASSES_GENERATED);
+
+        if (stub)
+            GenerationStats.increment(GenerationStats.Counter.CLASSES_STUBBED);
+
+        addAmalgamated(outputs);
+
         JavaClass[] interfaces = builder.getInterfaces();
         JavaClass superClass = builder.getSuperClass();
         HashSet<String> dependencies = builder.getDependencies();
 
+        builder = null;
+
+        // inherited members are part of class, so superclass and interfaces are on the same depth
+        int dependencyDepth = (maxDepth >= 0 ? depth + 1 : 0);
+
+        ArrayList<String> scheduled = new ArrayList<>();
+
         if (interfaces != null) {
             for (JavaClass javaInterface : interfaces) {
-                parseClass(javaInterface);
+                scheduled.add(javaInterface.getClassName());
+                parseClass(javaInterface, depth);
             }
         }
 
         if (dependencies != null) {
             for (String dependency : dependencies){
-                parseClass(dependency);
+                scheduled.add(dependency);
+                parseClass(dependency, dependencyDepth);
             }
         }
 
         if (superClass != null) {
-            parseClass(superClass);
+            scheduled.add(superClass.getClassName());
+            parseClass(superClass, depth);
         }
 
-        String header = builder.getHeader();
-        String implementation = builder.getImplementation();
-
-        String packageName = parsedClass.getPackageName();
-
-        generate(packageName, Utils.getShortClassName(packageName, parsedClass.getClassName()), header, implementation);
+        if (manifest != null) {
+            manifest.put(parsedClass.getClassName(), new GenerationManifest.Entry(fingerprint,
+                    outputs.toArray(new String[outputs.size()]), scheduled.toArray(new String[scheduled.size()])));
+        }
     }
 
-    private void parseClass(String className) throws Exception {
-        JavaClass parsedClass = getJavaClass(className);
+    private void parseClasses() throws Exception {
+        System.out.println("Parsing started...");
 
-        if (parsedClass == null)
-            throw new NullPointerException("Could not find class " + className + " in specified or system classpaths");
+        if (incremental)
+            manifest = GenerationManifest.load(output, prefix, excludes, excludedPackages, memberRules);
 
-        parseClass(parsedClass);
-    }
+        if (outputArchive != null)
+            outputWriter = new OutputWriter(outputArchive, true);
+        else
+            outputWriter = new OutputWriter(output, true);
 
-    private void parseClasses() throws Exception {
-        System.out.println("Parsing started...");
+        if (threads > 1)
+            executor = Executors.newFixedThreadPool(threads);
+
+        boolean completed = false;
 
-        parseClassPaths();
-        parsePackages();
+        try {
+            parseUsages();
+            parseClassPaths();
+            parsePackages();
 
-        // parse from classes specified in class options
-        if (classes != null) {
-            for (String cls : classes) {
-                System.out.print("Parsing class " + cls);
+            // parse from classes specified in class options
+            if (classes != null) {
+                for (String cls : classes) {
+                    System.out.print("Parsing class " + cls);
 
-                parseClass(cls);
+                    parseClass(cls, 0);
+                    awaitClasses();
 
-                System.out.println(" -- DONE!");
+                    System.out.println(" -- DONE!");
+                }
             }
+
+            awaitDeferredClasses();
+
+            if (amalgamation != null)
+                amalgamation.write(outputWriter);
+
+            writeLicense();
+
+            completed = true;
+        } finally {
+            if (executor != null)
+                executor.shutdownNow();
+
+            if (!completed)
+                outputWriter.abort();
         }
 
-        writeLicense();
+        // wait for writer stage, manifest is saved only when all files are written
+        outputWriter.finish();
+
+        GenerationStats.add(GenerationStats.Counter.FILES_WRITTEN, outputWriter.getWrittenCount());
+        GenerationStats.add(GenerationStats.Counter.FILES_UNCHANGED, outputWriter.getSkippedCount());
+
+        if (manifest != null)
+            writeManifest();
+
+        System.out.println(outputWriter.getSummary());
+
+        if (usage != null)
+            System.out.println(usage.getSummary());
+
         System.out.println("Successful!");
     }
 
@@ -146,18 +440,64 @@ public class DefaultTask implements ITask {
         for (String classPath : classPaths) {
             System.out.print("Parsing classpath " + classPath);
 
-            JarFile jarFile = new JarFile(classPath);
+            String[] containedClasses;
+
+            GenerationStats.enter(GenerationStats.Phase.SCAN);
 
-            String[] containedClasses = Utils.getContainedExportClasses(jarFile, excludes, excludedPackages);
+            try (JarFile jarFile = new JarFile(classPath)) {
+                containedClasses = Utils.getContainedExportClasses(jarFile, excludes, excludedPackages);
+            } finally {
+                GenerationStats.exit();
+            }
 
             for (String entry : containedClasses) {
-                parseClass(entry);
+                if (isUsed(entry))
+                    parseClass(entry, 0);
             }
 
+            awaitClasses();
+
             System.out.println(" -- DONE!");
         }
     }
 
+    private void parseUsages() throws IOException {
+        if (usagePaths == null)
+            return;
+
+        usage = new UsageIndex();
+
+        // generated wrappers are not usages
+        Path outputDir = Paths.get(output);
+
+        for (String usagePath : usagePaths) {
+            System.out.print("Parsing usages " + usagePath);
+
+            GenerationStats.enter(GenerationStats.Phase.SCAN);
+
+            try {
+                usage.scan(usagePath, outputDir);
+            } finally {
+                GenerationStats.exit();
+            }
+
+            System.out.println(" -- DONE!");
+        }
+    }
+
+    // classes of classpaths and packages are generated only when consumer sources reference them
+    private boolean isUsed(String className) {
+        if (usage == null)
+            return true;
+
+        className = Utils.getDottedClassName(className);
+
+        int index = className.lastIndexOf('.');
+        String packageName = (index == -1 ? "" : className.substring(0, index));
+
+        return usage.isClassUsed(prefix + Utils.getShortClassName(packageName, className));
+    }
+
     private void parsePackages() throws Exception {
         if (packages == null)
             return;
@@ -166,52 +506,105 @@ public class DefaultTask implements ITask {
         for (String pkg : packages) {
             System.out.print("Parsing package " + pkg);
 
-            String[] names = OJNIClassLoader.getInstance().getClassNamesFromPackage(pkg);
+            String[] names;
+
+            GenerationStats.enter(GenerationStats.Phase.SCAN);
+
+            try {
+                names = OJNIClassLoader.getInstance().getClassNamesFromPackage(pkg);
+            } finally {
+                GenerationStats.exit();
+            }
 
             for (String name : names) {
-                parseClass(name);
+                if (isUsed(name))
+                    parseClass(name, 0);
             }
 
+            awaitClasses();
+
             System.out.println(" -- DONE!");
         }
     }
 
     private void writeLicense() throws IOException {
         String license = ResourceList.getStringContentFromResource(Constants.TEMPLATE_LICENSE_FILENAME);
-        Path path = Paths.get(output + "/" + Constants.TEMPLATE_LICENSE_FILENAME);
 
-        Files.createDirectories(path.getParent());
-        Files.write(path, license.getBytes(Charset.defaultCharset()));
+        outputWriter.write(Constants.TEMPLATE_LICENSE_FILENAME, license.getBytes(Charset.defaultCharset()));
+    }
+
+    private void addAmalgamated(List<String> outputs) {
+        if (amalgamation == null)
+            return;
+
+        for (String output : outputs) {
+            amalgamation.add(output);
+        }
     }
 
-    private void generate(String packageName, String objName, String header, String implementation) throws Exception {
-        if (header != null) {
-            Path headerPath = getWritePath(packageName, prefix+objName, true);
+    private void writeManifest() throws IOException {
+        for (Path stale : manifest.getStaleOutputs()) {
+            outputWriter.delete(stale);
+        }
+
+        manifest.save();
+
+        System.out.println("Incremental: " + manifest.getReusedCount() + " classes reused, " +
+                manifest.getBuiltCount() + " classes built");
+    }
+
+    // returns paths of written files relative to output dir
+    private ArrayList<String> generate(String packageName, String objName, AbstractBuilder builder) throws Exception {
+        ArrayList<String> outputs = new ArrayList<>(2);
+
+        if (builder.hasHeader()) {
+            String headerPath = getRelativeWritePath(packageName, prefix+objName, true);
 
-            Files.createDirectories(headerPath.getParent());
+            GenerationStats.enter(GenerationStats.Phase.RENDER);
 
-            Files.write(headerPath, header.getBytes(Charset.defaultCharset()));
+            try (Writer writer = outputWriter.open(headerPath, Charset.defaultCharset())) {
+                builder.writeHeader(writer);
+            } finally {
+                GenerationStats.exit();
+            }
+
+            outputs.add(headerPath);
         }
 
-        if (implementation != null) {
-            Path implPath = getWritePath(packageName, prefix+objName, false);
+        if (builder.hasImplementation()) {
+            String implPath = getRelativeWritePath(packageName, prefix+objName, false);
 
-            Files.createDirectories(implPath.getParent());
+            GenerationStats.enter(GenerationStats.Phase.RENDER);
 
-            Files.write(implPath, implementation.getBytes(Charset.defaultCharset()));
+            try (Writer writer = outputWriter.open(implPath, Charset.defaultCharset())) {
+                builder.writeImplementation(writer);
+            } finally {
+                GenerationStats.exit();
+            }
+
+            outputs.add(implPath);
         }
+
+        return outputs;
     }
 
-    private Path getWritePath(String packageName, String className, boolean isHeader) {
+    private String getRelativeWritePath(String packageName, String className, boolean isHeader) {
 
         String packagePath = packageName.replace(".", "/");
 
-        return Paths.get(output + "/"
-                + packagePath + "/" + className + (isHeader ? ".h" : ".m"));
+        return packagePath + "/" + className + (isHeader ? ".h" : ".m");
     }
 
-    private JavaClass getJavaClass(String className) {
-        return OJNIClassLoader.getInstance().loadClass(Utils.getDottedClassName(className));
+    private JavaClass getJavaClass(PendingClass pendingClass) {
+        if (pendingClass.javaClass != null)
+            return pendingClass.javaClass;
+
+        JavaClass parsedClass = OJNIClassLoader.getInstance().loadClass(pendingClass.className);
+
+        if (parsedClass == null)
+            throw new NullPointerException("Could not find class " + pendingClass.className + " in specified or system classpaths");
+
+        return parsedClass;
     }
 
 
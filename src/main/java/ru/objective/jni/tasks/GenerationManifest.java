@@ -0,0 +1,272 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.objective.jni.tasks;
+
+import org.apache.commons.bcel6.classfile.Field;
+import org.apache.commons.bcel6.classfile.JavaClass;
+import org.apache.commons.bcel6.classfile.Method;
+import org.apache.commons.lang3.StringUtils;
+import ru.objective.jni.Main;
+import ru.objective.jni.constants.Constants;
+import ru.objective.jni.tasks.types.JavaType;
+import ru.objective.jni.utils.ClassFileInfo;
+import ru.objective.jni.utils.MemberRules;
+import ru.objective.jni.utils.OJNIClassLoader;
+import ru.objective.jni.utils.Utils;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Manifest of previous generation stored in output dir.
+ * Maps each java class to fingerprint of everything its wrapper depends on,
+ * so unchanged classes can be skipped on the next run.
+ */
+public class GenerationManifest {
+
+    private static final Charset MANIFEST_CHARSET = Charset.forName("UTF-8");
+    private static final String FIELD_SEPARATOR = "\t";
+    private static final String LIST_SEPARATOR = ",";
+
+    public static class Entry {
+        public final String fingerprint;
+        public final String[] outputs;
+        public final String[] dependencies;
+
+        public Entry(String fingerprint, String[] outputs, String[] dependencies) {
+            this.fingerprint = fingerprint;
+            this.outputs = outputs;
+            this.dependencies = dependencies;
+        }
+    }
+
+    private final Path output;
+    private final byte[] options;
+
+    private final Map<String, Entry> previous;
+    private final ConcurrentHashMap<String, Entry> current = new ConcurrentHashMap<>();
+    private final AtomicInteger reusedCount = new AtomicInteger();
+
+    private GenerationManifest(Path output, String options, Map<String, Entry> previous) {
+        this.output = output;
+        this.options = options.getBytes(MANIFEST_CHARSET);
+        this.previous = previous;
+    }
+
+    public static GenerationManifest load(String output, String prefix, String[] excludes, String[] excludedPackages,
+                                          MemberRules memberRules) throws IOException {
+        Path outputPath = Paths.get(output);
+        Path manifestPath = outputPath.resolve(Constants.MANIFEST_FILENAME);
+
+        // everything that changes output of all classes
+        String options = Main.class.getPackage().getImplementationVersion() + FIELD_SEPARATOR + prefix +
+                FIELD_SEPARATOR + sortedJoin(excludes) + FIELD_SEPARATOR + sortedJoin(excludedPackages);
+
+        if (memberRules != null)
+            options += FIELD_SEPARATOR + memberRules;
+
+        ConcurrentHashMap<String, Entry> previous = new ConcurrentHashMap<>();
+
+        if (Files.exists(manifestPath)) {
+            for (String line : Files.readAllLines(manifestPath, MANIFEST_CHARSET)) {
+                String[] fields = line.split(FIELD_SEPARATOR, -1);
+
+                if (fields.length != 4)
+                    continue;
+
+                previous.put(fields[0], new Entry(fields[1], splitList(fields[2]), splitList(fields[3])));
+            }
+        }
+
+        return new GenerationManifest(outputPath, options, previous);
+    }
+
+    /**
+     * Returns previous entry of class if its fingerprint is not changed
+     * and all its outputs still exist, otherwise null.
+     */
+    public Entry getReusableEntry(String className, String fingerprint) {
+        Entry entry = previous.get(className);
+
+        if (entry == null || !entry.fingerprint.equals(fingerprint))
+            return null;
+
+        for (String outputFile : entry.outputs) {
+            if (!Files.exists(output.resolve(outputFile)))
+                return null;
+        }
+
+        return entry;
+    }
+
+    public void put(String className, Entry entry) {
+        current.put(className, entry);
+
+        if (entry == previous.get(className))
+            reusedCount.incrementAndGet();
+    }
+
+    public int getReusedCount() {
+        return reusedCount.get();
+    }
+
+    public int getBuiltCount() {
+        return current.size() - reusedCount.get();
+    }
+
+    /**
+     * Outputs of previous run which are not produced anymore.
+     */
+    public Collection<Path> getStaleOutputs() {
+        HashSet<String> actual = new HashSet<>();
+
+        for (Entry entry : current.values()) {
+            actual.addAll(Arrays.asList(entry.outputs));
+        }
+
+        TreeSet<String> stale = new TreeSet<>();
+
+        for (Entry entry : previous.values()) {
+            for (String outputFile : entry.outputs) {
+                if (!actual.contains(outputFile))
+                    stale.add(outputFile);
+            }
+        }
+
+        ArrayList<Path> result = new ArrayList<>(stale.size());
+
+        for (String outputFile : stale) {
+            result.add(output.resolve(outputFile));
+        }
+
+        return result;
+    }
+
+    public void save() throws IOException {
+        ArrayList<String> lines = new ArrayList<>(current.size());
+
+        for (Map.Entry<String, Entry> entry : new TreeMap<>(current).entrySet()) {
+            Entry value = entry.getValue();
+
+            lines.add(entry.getKey() + FIELD_SEPARATOR + value.fingerprint + FIELD_SEPARATOR +
+                    StringUtils.join(value.outputs, LIST_SEPARATOR) + FIELD_SEPARATOR +
+                    StringUtils.join(value.dependencies, LIST_SEPARATOR));
+        }
+
+        Files.createDirectories(output);
+        Files.write(output.resolve(Constants.MANIFEST_FILENAME), lines, MANIFEST_CHARSET);
+    }
+
+    /**
+     * Fingerprint of class file bytes, generator options and parts of other classes
+     * wrapper depends on: supertypes names and flags, kind of referenced types.
+     */
+    public String fingerprint(JavaClass javaClass) throws NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-1");
+
+        digest.update(options);
+        digest.update(javaClass.getBytes());
+
+        try {
+            for (JavaClass superClass : javaClass.getSuperClasses()) {
+                update(digest, superClass.getClassName() + ":" + superClass.getAccessFlags() + ":" + superClass.isAnonymous());
+            }
+
+            for (JavaClass superInterface : javaClass.getAllInterfaces()) {
+                update(digest, superInterface.getClassName());
+            }
+        } catch (ClassNotFoundException e) {
+            update(digest, "!" + e.getMessage());
+        }
+
+        for (String referenced : getReferencedClassNames(javaClass)) {
+            ClassFileInfo referencedClass = OJNIClassLoader.getInstance().loadClassInfo(referenced);
+
+            String kind = "?";
+
+            if (referencedClass != null)
+                kind = (referencedClass.isInterface() ? "I" : "C");
+
+            update(digest, referenced + ":" + kind);
+        }
+
+        StringBuilder result = new StringBuilder();
+
+        for (byte b : digest.digest()) {
+            result.append(String.format("%02x", b));
+        }
+
+        return result.toString();
+    }
+
+    private static TreeSet<String> getReferencedClassNames(JavaClass javaClass) {
+        TreeSet<String> result = new TreeSet<>();
+
+        for (Field field : javaClass.getFields()) {
+            JavaType fieldType = JavaType.forDescriptor(field.getSignature());
+
+            if (!fieldType.isPrimitive())
+                result.add(fieldType.getBasicName());
+        }
+
+        for (Method method : javaClass.getMethods()) {
+            List<String> dependencies = Utils.getMethodNonPrimitiveDependencies(method);
+
+            if (dependencies != null)
+                result.addAll(dependencies);
+        }
+
+        return result;
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(MANIFEST_CHARSET));
+        digest.update((byte)0);
+    }
+
+    private static String sortedJoin(String[] values) {
+        if (values == null)
+            return "";
+
+        String[] sorted = values.clone();
+        Arrays.sort(sorted);
+
+        return StringUtils.join(sorted, LIST_SEPARATOR);
+    }
+
+    private static String[] splitList(String value) {
+        if (value.isEmpty())
+            return new String[0];
+
+        return value.split(LIST_SEPARATOR);
+    }
+}
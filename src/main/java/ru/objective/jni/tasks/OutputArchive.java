@@ -0,0 +1,361 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.objective.jni.tasks;
+
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.GregorianCalendar;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Single file archive of generated wrappers, format is chosen by extension: .zip, .jar, .tar, .tar.gz or .tgz
+ * Archive is written into temporary file next to it and replaces the previous one only when committed.
+ * Entries are appended to spill file next to archive as they arrive and copied into archive on commit
+ * sorted by name with fixed times, so the same files give the same archive whatever order they were generated in.
+ * Only names and spill file positions are kept in memory.
+ */
+public abstract class OutputArchive {
+
+    private static final int BUFFER_SIZE = 65536;
+
+    private final Path path;
+    private final Path tempPath;
+    private final Path spillPath;
+
+    // created with the first entry
+    private FileChannel spill;
+    private long spillSize;
+
+    // name -> offset and length of content in spill file
+    private final TreeMap<String, long[]> entries = new TreeMap<>();
+
+    protected OutputArchive(Path path) throws IOException {
+        this.path = path;
+        this.tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        this.spillPath = path.resolveSibling(path.getFileName() + ".entries.tmp");
+
+        Path parent = path.toAbsolutePath().getParent();
+
+        if (parent != null)
+            Files.createDirectories(parent);
+    }
+
+    public static OutputArchive create(Path path) throws IOException {
+        String name = path.getFileName().toString().toLowerCase();
+
+        if (name.endsWith(".zip") || name.endsWith(".jar"))
+            return new ZipArchive(path);
+        else if (name.endsWith(".tar"))
+            return new TarArchive(path, false);
+        else if (name.endsWith(".tar.gz") || name.endsWith(".tgz"))
+            return new TarArchive(path, true);
+
+        throw new IllegalArgumentException("Unsupported archive type " + path.getFileName() +
+                ", expected .zip, .jar, .tar, .tar.gz or .tgz");
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public synchronized void putEntry(String name, byte[] content, int length) throws IOException {
+        if (entries.containsKey(name))
+            throw new IOException("Duplicate archive entry " + name);
+
+        if (spill == null) {
+            spill = FileChannel.open(spillPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(content, 0, length);
+
+        while (buffer.hasRemaining())
+            spill.write(buffer, spillSize + buffer.position());
+
+        entries.put(name, new long[] {spillSize, length});
+        spillSize += length;
+    }
+
+    // reads entry content from spill file into buffer
+    private void readEntry(long offset, byte[] buffer, int length) throws IOException {
+        ByteBuffer target = ByteBuffer.wrap(buffer, 0, length);
+
+        while (target.hasRemaining()) {
+            if (spill.read(target, offset + target.position()) < 0)
+                throw new EOFException("Unexpected end of " + spillPath);
+        }
+    }
+
+    // wraps archive stream opened on commit
+    protected abstract void startEntries(OutputStream stream) throws IOException;
+
+    protected abstract void writeEntry(String name, byte[] content, int length) throws IOException;
+
+    // writes archive trailer, underlying stream is closed by caller
+    protected abstract void finishEntries() throws IOException;
+
+    /**
+     * Completes archive and moves it to the target path.
+     */
+    public synchronized void commit() throws IOException {
+        try (OutputStream stream = new BufferedOutputStream(Files.newOutputStream(tempPath), BUFFER_SIZE)) {
+            startEntries(stream);
+
+            byte[] buffer = new byte[BUFFER_SIZE];
+
+            for (Map.Entry<String, long[]> entry : entries.entrySet()) {
+                int length = (int)entry.getValue()[1];
+
+                if (length > buffer.length)
+                    buffer = new byte[length];
+
+                readEntry(entry.getValue()[0], buffer, length);
+                writeEntry(entry.getKey(), buffer, length);
+            }
+
+            finishEntries();
+        } catch (IOException e) {
+            discard();
+            throw e;
+        }
+
+        closeSpill();
+
+        Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Drops incomplete archive, previous archive at the target path is kept.
+     */
+    public synchronized void discard() {
+        closeSpill();
+
+        try {
+            Files.deleteIfExists(tempPath);
+        } catch (IOException ignored) {}
+    }
+
+    private void closeSpill() {
+        entries.clear();
+
+        if (spill != null) {
+            try {
+                spill.close();
+            } catch (IOException ignored) {}
+
+            spill = null;
+            spillSize = 0;
+        }
+
+        try {
+            Files.deleteIfExists(spillPath);
+        } catch (IOException ignored) {}
+    }
+
+    private static class ZipArchive extends OutputArchive {
+
+        // the earliest time zip format stores, in local time as zip does
+        private static final long ENTRY_TIME = new GregorianCalendar(1980, 0, 1).getTimeInMillis();
+
+        private ZipOutputStream zip;
+
+        ZipArchive(Path path) throws IOException {
+            super(path);
+        }
+
+        @Override
+        protected void startEntries(OutputStream stream) {
+            zip = new ZipOutputStream(stream, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        protected void writeEntry(String name, byte[] content, int length) throws IOException {
+            ZipEntry entry = new ZipEntry(name);
+            entry.setTime(ENTRY_TIME);
+
+            zip.putNextEntry(entry);
+            zip.write(content, 0, length);
+            zip.closeEntry();
+        }
+
+        @Override
+        protected void finishEntries() throws IOException {
+            zip.finish();
+        }
+    }
+
+    /**
+     * POSIX ustar archive, names which do not fit into header are stored in pax extended header.
+     */
+    private static class TarArchive extends OutputArchive {
+
+        private static final int BLOCK_SIZE = 512;
+        private static final int NAME_LENGTH = 100;
+        private static final int PREFIX_LENGTH = 155;
+
+        private final boolean gzip;
+        private final byte[] padding = new byte[BLOCK_SIZE];
+
+        private OutputStream tar;
+
+        TarArchive(Path path, boolean gzip) throws IOException {
+            super(path);
+
+            this.gzip = gzip;
+        }
+
+        @Override
+        protected void startEntries(OutputStream stream) throws IOException {
+            tar = (gzip ? new GZIPOutputStream(stream, BUFFER_SIZE) : stream);
+        }
+
+        @Override
+        protected void writeEntry(String name, byte[] content, int length) throws IOException {
+            String headerName = name;
+            String headerPrefix = "";
+
+            if (!isAscii(name)) {
+                headerName = null;
+            } else if (name.length() > NAME_LENGTH) {
+                int split = name.indexOf('/', name.length() - NAME_LENGTH - 1);
+
+                if (split > 0 && split <= PREFIX_LENGTH) {
+                    headerPrefix = name.substring(0, split);
+                    headerName = name.substring(split + 1);
+                } else {
+                    headerName = null;
+                }
+            }
+
+            if (headerName == null) {
+                byte[] record = getPaxRecord("path", name);
+
+                writeEntry("././@PaxHeader", "", 'x', record, record.length);
+
+                headerName = getTruncated(name);
+            }
+
+            writeEntry(headerName, headerPrefix, '0', content, length);
+        }
+
+        @Override
+        protected void finishEntries() throws IOException {
+            // end of archive is two empty blocks
+            tar.write(padding);
+            tar.write(padding);
+
+            if (tar instanceof GZIPOutputStream)
+                ((GZIPOutputStream)tar).finish();
+        }
+
+        private void writeEntry(String name, String prefix, char type, byte[] content, int length) throws IOException {
+            byte[] header = new byte[BLOCK_SIZE];
+
+            putString(header, 0, NAME_LENGTH, name);
+            putOctal(header, 100, 8, 0644);
+            putOctal(header, 108, 8, 0);
+            putOctal(header, 116, 8, 0);
+            putOctal(header, 124, 12, length);
+            putOctal(header, 136, 12, 0);
+            header[156] = (byte)type;
+            putString(header, 257, 6, "ustar");
+            putString(header, 263, 2, "00");
+            putString(header, 345, PREFIX_LENGTH, prefix);
+
+            // checksum is computed with its own field filled by spaces
+            for (int i = 148; i < 156; i++)
+                header[i] = ' ';
+
+            int checksum = 0;
+
+            for (byte b : header)
+                checksum += (b & 0xff);
+
+            putOctal(header, 148, 7, checksum);
+
+            tar.write(header);
+            tar.write(content, 0, length);
+
+            int remainder = length % BLOCK_SIZE;
+
+            if (remainder != 0)
+                tar.write(padding, 0, BLOCK_SIZE - remainder);
+        }
+
+        // record is "<length> <key>=<value>\n", where length counts the whole record including itself
+        private static byte[] getPaxRecord(String key, String value) {
+            int contentLength = (" " + key + "=" + value + "\n").getBytes(StandardCharsets.UTF_8).length;
+            int length = contentLength;
+
+            while (String.valueOf(length).length() + contentLength != length)
+                length = String.valueOf(length).length() + contentLength;
+
+            return (length + " " + key + "=" + value + "\n").getBytes(StandardCharsets.UTF_8);
+        }
+
+        private static String getTruncated(String name) {
+            StringBuilder result = new StringBuilder(NAME_LENGTH);
+
+            for (int i = 0; i < name.length() && result.length() < NAME_LENGTH; i++) {
+                char c = name.charAt(i);
+
+                result.append(c < 0x80 ? c : '_');
+            }
+
+            return result.toString();
+        }
+
+        private static boolean isAscii(String value) {
+            for (int i = 0; i < value.length(); i++) {
+                if (value.charAt(i) >= 0x80)
+                    return false;
+            }
+
+            return true;
+        }
+
+        private static void putString(byte[] header, int offset, int length, String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+
+            System.arraycopy(bytes, 0, header, offset, Math.min(bytes.length, length));
+        }
+
+        // zero padded octal number followed by NUL
+        private static void putOctal(byte[] header, int offset, int length, long value) {
+            String octal = Long.toOctalString(value);
+
+            while (octal.length() < length - 1)
+                octal = "0" + octal;
+
+            putString(header, offset, length - 1, octal);
+            header[offset + length - 1] = 0;
+        }
+    }
+}
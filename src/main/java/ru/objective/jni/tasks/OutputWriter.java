@@ -0,0 +1,659 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.objective.jni.tasks;
+
+import ru.objective.jni.utils.GenerationStats;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Writes generated files into output dir.
+ * Files with the same content are left untouched to keep their modification time,
+ * so Xcode does not recompile unchanged wrappers.
+ * Changed files are written into temporary files next to them and moved into place by finish,
+ * new files are written in place and deleted if generation fails,
+ * so failed or aborted generation leaves previous files as they were.
+ * Temporary files left by killed run are removed when their directory is first written to.
+ *
+ * In asynchronous mode file I/O runs on a dedicated writer thread fed by a bounded queue of chunks,
+ * so generator threads do not wait for the disk until the queue is full.
+ * Write errors are collected and reported by finish in output path order.
+ *
+ * In archive mode all files are put into single OutputArchive instead of output dir,
+ * each file is collected in memory and becomes an archive entry when closed.
+ */
+public class OutputWriter {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int QUEUE_CAPACITY = 256;
+
+    private static final Chunk END = new Chunk(null, null, 0, false);
+
+    // .<file name>.<number>.tmp, see ComparingOutputStream.startWriting
+    private static final Pattern TEMP_FILE_NAME = Pattern.compile("\\..+\\.\\d+\\.tmp");
+
+    private static final DirectoryStream.Filter<Path> TEMP_FILE_FILTER = new DirectoryStream.Filter<Path>() {
+        @Override
+        public boolean accept(Path entry) {
+            return TEMP_FILE_NAME.matcher(entry.getFileName().toString()).matches();
+        }
+    };
+
+    private final String output;
+    private final OutputArchive archive;
+
+    private final AtomicInteger writtenCount = new AtomicInteger();
+    private final AtomicInteger skippedCount = new AtomicInteger();
+    private final AtomicInteger deletedCount = new AtomicInteger();
+
+    // directories known to exist and cleaned from temporary files, prepared once per run
+    private final Set<Path> directories = Collections.newSetFromMap(new ConcurrentHashMap<Path, Boolean>());
+
+    // temporary file -> output file, in order of creation
+    private final ConcurrentLinkedQueue<Map.Entry<Path, Path>> pendingFiles = new ConcurrentLinkedQueue<>();
+    // files which did not exist before run
+    private final ConcurrentLinkedQueue<Path> createdFiles = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger tempCount = new AtomicInteger();
+    private volatile boolean aborted;
+
+    private final BlockingQueue<Chunk> queue;
+    private final Thread writerThread;
+    private final TreeMap<String, IOException> errors = new TreeMap<>();
+
+    private static class Chunk {
+        final OutputFile target;
+        final byte[] data;
+        final int length;
+        final boolean last;
+
+        Chunk(OutputFile target, byte[] data, int length, boolean last) {
+            this.target = target;
+            this.data = data;
+            this.length = length;
+            this.last = last;
+        }
+    }
+
+    public OutputWriter(String output) {
+        this(output, false);
+    }
+
+    public OutputWriter(String output, boolean async) {
+        this(output, null, async);
+    }
+
+    public OutputWriter(OutputArchive archive, boolean async) {
+        this(null, archive, async);
+    }
+
+    private OutputWriter(String output, OutputArchive archive, boolean async) {
+        this.output = output;
+        this.archive = archive;
+
+        if (async) {
+            queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+            writerThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    processChunks();
+                }
+            }, "ojni-writer");
+
+            writerThread.setDaemon(true);
+            writerThread.start();
+        } else {
+            queue = null;
+            writerThread = null;
+        }
+    }
+
+    public Path getPath(String relativePath) {
+        return Paths.get(output + "/" + relativePath);
+    }
+
+    public void write(String relativePath, byte[] content) throws IOException {
+        try (OutputStream stream = openStream(relativePath)) {
+            stream.write(content);
+        }
+    }
+
+    /**
+     * Opens buffered writer to output file, content is compared with existing file while written.
+     */
+    public Writer open(String relativePath, Charset charset) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(openStream(relativePath), charset), BUFFER_SIZE);
+    }
+
+    public OutputStream openStream(String relativePath) throws IOException {
+        OutputFile stream;
+
+        if (archive != null)
+            stream = new ArchiveOutputStream(relativePath);
+        else
+            stream = new ComparingOutputStream(getPath(relativePath), relativePath);
+
+        return (queue != null ? new QueuedOutputStream(stream) : stream);
+    }
+
+    /**
+     * Waits until all queued files are written and stops writer thread.
+     * Throws first error in output path order if any file could not be written.
+     * Changed files and archive are committed only when all files are written.
+     */
+    public void finish() throws IOException {
+        stopWriter(false);
+
+        synchronized (errors) {
+            if (errors.isEmpty()) {
+                if (archive != null)
+                    archive.commit();
+
+                commitFiles();
+
+                return;
+            }
+
+            if (archive != null)
+                archive.discard();
+
+            discardFiles();
+
+            for (Map.Entry<String, IOException> error : errors.entrySet()) {
+                System.out.println("ERROR! Could not write " + error.getKey() + ": " + error.getValue().getMessage());
+            }
+
+            IOException first = errors.firstEntry().getValue();
+
+            throw new IOException("Could not write " + errors.size() + " files, first error: " + first.getMessage(), first);
+        }
+    }
+
+    /**
+     * Stops writer thread, files which are still queued are dropped.
+     */
+    public void abort() {
+        aborted = true;
+
+        try {
+            stopWriter(true);
+        } catch (IOException e) {
+            // interrupted, writer thread is daemon anyway
+        }
+
+        if (archive != null)
+            archive.discard();
+
+        discardFiles();
+    }
+
+    private void commitFiles() throws IOException {
+        Map.Entry<Path, Path> file;
+
+        while ((file = pendingFiles.poll()) != null) {
+            try {
+                Files.move(file.getKey(), file.getValue(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                discardFiles();
+                throw e;
+            }
+        }
+
+        createdFiles.clear();
+    }
+
+    private void discardFiles() {
+        Map.Entry<Path, Path> file;
+
+        while ((file = pendingFiles.poll()) != null) {
+            try {
+                Files.deleteIfExists(file.getKey());
+            } catch (IOException ignored) {}
+        }
+
+        Path created;
+
+        while ((created = createdFiles.poll()) != null) {
+            try {
+                Files.deleteIfExists(created);
+            } catch (IOException ignored) {}
+        }
+    }
+
+    // creates directory or removes temporary files left in it by killed run
+    private void prepareDirectory(Path directory) throws IOException {
+        if (directories.contains(directory))
+            return;
+
+        synchronized (directories) {
+            if (directories.contains(directory))
+                return;
+
+            if (Files.isDirectory(directory)) {
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, TEMP_FILE_FILTER)) {
+                    for (Path file : stream)
+                        Files.deleteIfExists(file);
+                }
+            } else {
+                Files.createDirectories(directory);
+            }
+
+            directories.add(directory);
+        }
+    }
+
+    private void stopWriter(boolean dropQueued) throws IOException {
+        if (writerThread == null || !writerThread.isAlive())
+            return;
+
+        if (dropQueued)
+            queue.clear();
+
+        try {
+            queue.put(END);
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for output writer");
+        }
+    }
+
+    private void processChunks() {
+        while (true) {
+            Chunk chunk;
+
+            try {
+                chunk = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            if (chunk == END)
+                return;
+
+            OutputFile target = chunk.target;
+
+            if (target.failed)
+                continue;
+
+            // in synchronous mode writes are counted in phase of caller
+            GenerationStats.enter(GenerationStats.Phase.WRITE);
+
+            try {
+                if (chunk.length > 0)
+                    target.write(chunk.data, 0, chunk.length);
+
+                if (chunk.last)
+                    target.close();
+            } catch (Throwable e) {
+                target.fail(e);
+            } finally {
+                GenerationStats.exit();
+            }
+        }
+    }
+
+    public void delete(Path path) throws IOException {
+        if (Files.deleteIfExists(path))
+            deletedCount.incrementAndGet();
+    }
+
+    /**
+     * Deletes output file if exists, archive has nothing to delete.
+     */
+    public boolean delete(String relativePath) throws IOException {
+        if (archive != null || !Files.deleteIfExists(getPath(relativePath)))
+            return false;
+
+        deletedCount.incrementAndGet();
+
+        return true;
+    }
+
+    public int getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    public int getSkippedCount() {
+        return skippedCount.get();
+    }
+
+    public int getDeletedCount() {
+        return deletedCount.get();
+    }
+
+    public String getSummary() {
+        if (archive != null)
+            return "Files: " + getWrittenCount() + " written to " + archive.getPath();
+
+        return "Files: " + getWrittenCount() + " written, " + getSkippedCount() + " unchanged, " +
+                getDeletedCount() + " deleted";
+    }
+
+    /**
+     * Collects written bytes into chunks and passes them to writer thread.
+     */
+    private class QueuedOutputStream extends OutputStream {
+
+        private final OutputFile target;
+
+        private byte[] buffer = new byte[BUFFER_SIZE];
+        private int length;
+        private boolean closed;
+
+        QueuedOutputStream(OutputFile target) {
+            this.target = target;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (length == buffer.length)
+                send(false);
+
+            buffer[length++] = (byte)b;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int count) throws IOException {
+            while (count > 0) {
+                if (length == buffer.length)
+                    send(false);
+
+                int copied = Math.min(count, buffer.length - length);
+
+                System.arraycopy(bytes, offset, buffer, length, copied);
+
+                length += copied;
+                offset += copied;
+                count -= copied;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed)
+                return;
+
+            closed = true;
+            send(true);
+        }
+
+        private void send(boolean last) throws IOException {
+            try {
+                queue.put(new Chunk(target, buffer, length, last));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while writing " + target.relativePath);
+            }
+
+            buffer = (last ? null : new byte[BUFFER_SIZE]);
+            length = 0;
+        }
+    }
+
+    /**
+     * Single output file, in asynchronous mode it is written and closed on writer thread.
+     */
+    private abstract class OutputFile extends OutputStream {
+
+        protected final String relativePath;
+        protected boolean failed;
+
+        OutputFile(String relativePath) {
+            this.relativePath = relativePath;
+        }
+
+        void fail(Throwable e) {
+            failed = true;
+
+            synchronized (errors) {
+                errors.put(relativePath, (e instanceof IOException ? (IOException)e : new IOException(e)));
+            }
+
+            try {
+                close();
+            } catch (Throwable ignored) {}
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte)b}, 0, 1);
+        }
+    }
+
+    /**
+     * Collects file content and puts it into archive as a whole, so entries of concurrently written files never mix.
+     */
+    private class ArchiveOutputStream extends OutputFile {
+
+        private byte[] content = new byte[BUFFER_SIZE];
+        private int length;
+        private boolean closed;
+
+        ArchiveOutputStream(String relativePath) {
+            super(relativePath);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int count) throws IOException {
+            if (length + count > content.length)
+                content = Arrays.copyOf(content, Math.max(content.length * 2, length + count));
+
+            System.arraycopy(bytes, offset, content, length, count);
+            length += count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed)
+                return;
+
+            closed = true;
+
+            if (failed)
+                return;
+
+            archive.putEntry(relativePath, content, length);
+
+            GenerationStats.add(GenerationStats.Counter.BYTES_WRITTEN, length);
+
+            content = null;
+            writtenCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Reads existing file along with written content, temporary file is created only from the first difference.
+     * Unchanged prefix is copied from existing file, so only the buffer is kept in memory.
+     */
+    private class ComparingOutputStream extends OutputFile {
+
+        private final Path path;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+
+        private boolean opened;
+        private InputStream existing;
+        private Path tempPath;
+        private boolean created;
+        private FileChannel channel;
+        private long position;
+        private boolean closed;
+
+        ComparingOutputStream(Path path, String relativePath) {
+            super(relativePath);
+
+            this.path = path;
+        }
+
+        // files are opened lazily, so in asynchronous mode it happens on writer thread
+        private void open() throws IOException {
+            opened = true;
+
+            prepareDirectory(path.getParent());
+
+            if (Files.isRegularFile(path))
+                existing = Files.newInputStream(path);
+            else
+                create();
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (!opened)
+                open();
+
+            while (existing != null && length > 0) {
+                int read = existing.read(buffer, 0, Math.min(length, buffer.length));
+
+                int same = 0;
+
+                while (same < read && buffer[same] == bytes[offset + same])
+                    same++;
+
+                position += same;
+                offset += same;
+                length -= same;
+
+                if (same < read || read == -1)
+                    startWriting();
+            }
+
+            if (length > 0)
+                writeFully(ByteBuffer.wrap(bytes, offset, length));
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed)
+                return;
+
+            closed = true;
+
+            try {
+                if (!opened && !failed)
+                    open();
+
+                if (failed)
+                    return;
+
+                if (existing != null) {
+                    // existing file is longer than content
+                    if (existing.read() != -1)
+                        startWriting();
+                    else
+                        skippedCount.incrementAndGet();
+                }
+
+                if (channel != null)
+                    writtenCount.incrementAndGet();
+            } finally {
+                if (existing != null)
+                    existing.close();
+
+                if (channel != null)
+                    channel.close();
+
+                if (failed && tempPath != null)
+                    Files.deleteIfExists(tempPath);
+
+                if (failed && created)
+                    Files.deleteIfExists(path);
+            }
+        }
+
+        // new file is written in place, nothing to keep if generation fails
+        private void create() throws IOException {
+            if (aborted)
+                throw new IOException("Output writer is aborted");
+
+            channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            created = true;
+
+            createdFiles.add(path);
+        }
+
+        // continues writing into temporary file, starting with unchanged prefix of existing file
+        private void startWriting() throws IOException {
+            if (aborted)
+                throw new IOException("Output writer is aborted");
+
+            existing.close();
+            existing = null;
+
+            // created with default permissions unlike Files.createTempFile, they are kept by the move
+            while (channel == null) {
+                tempPath = path.resolveSibling("." + path.getFileName() + "." + tempCount.incrementAndGet() + ".tmp");
+
+                try {
+                    channel = FileChannel.open(tempPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                } catch (FileAlreadyExistsException e) {
+                    // written by concurrent run into the same dir
+                }
+            }
+
+            pendingFiles.add(new AbstractMap.SimpleImmutableEntry<>(tempPath, path));
+
+            if (position > 0) {
+                try (FileChannel source = FileChannel.open(path, StandardOpenOption.READ)) {
+                    long copied = 0;
+
+                    while (copied < position)
+                        copied += source.transferTo(copied, position - copied, channel);
+                }
+            }
+
+            channel.position(position);
+        }
+
+        private void writeFully(ByteBuffer data) throws IOException {
+            GenerationStats.add(GenerationStats.Counter.BYTES_WRITTEN, data.remaining());
+
+            position += data.remaining();
+
+            while (data.hasRemaining())
+                channel.write(data);
+        }
+    }
+}
@@ -17,17 +17,26 @@
 package ru.objective.jni.tasks;
 
 import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import ru.objective.jni.utils.MemberRules;
 import ru.objective.jni.utils.OJNIClassLoader;
-import ru.objective.jni.utils.Utils;
 
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 
 /**
  * Created by ashitikov on 28.11.15.
  */
 public class TaskManager {
 
+    // options applied to whole batch, the rest are options of its jobs
+    private static final List<String> BATCH_OPTIONS = Arrays.asList("batch", "threads", "stats", "class-cache");
+
+    private static final int MAX_PORT = 65535;
+
     public TaskManager() {
     }
 
@@ -39,7 +48,34 @@ public class TaskManager {
         String[] packages = cmd.getOptionValues("package");
 
         String output = cmd.getOptionValue("output", ".");
+        String outputArchive = cmd.getOptionValue("output-archive");
         String prefix = cmd.getOptionValue("prefix", "");
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        if (cmd.hasOption("threads"))
+            threads = parseNumber(cmd.getOptionValue("threads"), 1, Integer.MAX_VALUE, "--threads expects positive number");
+
+        // classes per unity file, whole package by default
+        int amalgamationSize = 0;
+
+        if (cmd.hasOption("amalgamate")) {
+            String value = cmd.getOptionValue("amalgamate", "package");
+
+            amalgamationSize = (value.equals("package") ? Integer.MAX_VALUE :
+                    parseNumber(value, 1, Integer.MAX_VALUE, "--amalgamate expects package or positive number of classes"));
+        }
+
+        int maxDepth = -1;
+
+        if (cmd.hasOption("max-depth"))
+            maxDepth = parseNumber(cmd.getOptionValue("max-depth"), 0, Integer.MAX_VALUE, "--max-depth expects non-negative number");
+
+        long classCacheSize = Long.MAX_VALUE;
+
+        // int megabytes can not overflow long bytes
+        if (cmd.hasOption("class-cache"))
+            classCacheSize = parseNumber(cmd.getOptionValue("class-cache"), 1, Integer.MAX_VALUE,
+                    "--class-cache expects positive number of megabytes") * 1024L * 1024;
 
         ITask task = null;
 
@@ -47,12 +83,68 @@ public class TaskManager {
             task = new HelpTask();
         } else if (cmd.hasOption("version")) {
             task = new VersionTask();
+        } else if (cmd.hasOption("daemon")) {
+            task = new DaemonTask(parseNumber(cmd.getOptionValue("daemon"), 1, MAX_PORT, "--daemon expects port number"));
+        } else if (cmd.hasOption("connect")) {
+            task = new DaemonClientTask(parseNumber(cmd.getOptionValue("connect"), 1, MAX_PORT, "--connect expects port number"), cmd);
+        } else if (cmd.hasOption("shutdown")) {
+            throw new IllegalArgumentException("--shutdown could be used only with --connect");
+        } else if (cmd.hasOption("batch")) {
+            for (Option option : cmd.getOptions()) {
+                if (!BATCH_OPTIONS.contains(option.getLongOpt()))
+                    throw new IllegalArgumentException("--" + option.getLongOpt() + " could not be used with --batch, " +
+                            "specify it for jobs in batch file");
+            }
+
+            BatchTask batchTask = new BatchTask(Paths.get(cmd.getOptionValue("batch")), threads, cmd.getOptionValue("class-cache"));
+            batchTask.setStatsFormat(cmd.hasOption("stats") ? cmd.getOptionValue("stats", "text") : null);
+
+            task = batchTask;
         } else {
-            OJNIClassLoader.getInstance().setClassPaths(Utils.classPathsFromStrings(classPaths));
+            if (outputArchive != null && cmd.hasOption("incremental"))
+                throw new IllegalArgumentException("--incremental could not be used with --output-archive");
 
-            task = new DefaultTask(classPaths, excludes, excludesPackages, classes, packages, output, prefix);
+            if (maxDepth >= 0 && cmd.hasOption("incremental"))
+                throw new IllegalArgumentException("--incremental could not be used with --max-depth");
+
+            if (cmd.hasOption("usage") && cmd.hasOption("incremental"))
+                throw new IllegalArgumentException("--incremental could not be used with --usage");
+
+            // loaded before the task is created, so invalid rules fail before anything is started
+            MemberRules memberRules = null;
+
+            if (cmd.hasOption("member-rules"))
+                memberRules = MemberRules.load(Paths.get(cmd.getOptionValue("member-rules")));
+
+            // set on each run, so daemon requests do not inherit budget of previous ones
+            OJNIClassLoader.getInstance().setClassCacheSize(classCacheSize);
+            OJNIClassLoader.getInstance().setClassPaths(classPaths);
+
+            DefaultTask defaultTask = new DefaultTask(classPaths, excludes, excludesPackages, classes, packages, output, outputArchive, prefix, threads, cmd.hasOption("incremental"), amalgamationSize);
+            defaultTask.setMaxDepth(maxDepth);
+            defaultTask.setMemberRules(memberRules);
+            defaultTask.setUsagePaths(cmd.getOptionValues("usage"));
+            defaultTask.setStatsFormat(cmd.hasOption("stats") ? cmd.getOptionValue("stats", "text") : null);
+
+            task = defaultTask;
         }
 
         task.run();
     }
+
+    // number option in range from min to max, anything else fails with the same message as out of range number
+    private static int parseNumber(String value, int min, int max, String message) {
+        int result;
+
+        try {
+            result = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(message);
+        }
+
+        if (result < min || result > max)
+            throw new IllegalArgumentException(message);
+
+        return result;
+    }
 }
@@ -17,15 +17,19 @@
 package ru.objective.jni.tasks.builders;
 
 import org.apache.commons.bcel6.classfile.*;
-import org.apache.commons.bcel6.generic.ArrayType;
-import org.apache.commons.bcel6.generic.Type;
 import org.apache.commons.lang3.StringUtils;
+import ru.objective.jni.utils.GenerationStats;
+import ru.objective.jni.utils.MemberRules;
 import ru.objective.jni.utils.MethodExportInfo;
 import ru.objective.jni.utils.OJNIClassLoader;
+import ru.objective.jni.utils.UsageIndex;
 import ru.objective.jni.utils.Utils;
 import ru.objective.jni.constants.Constants;
-import ru.objective.jni.tasks.types.PrimitiveTypeConverter;
+import ru.objective.jni.tasks.types.JavaType;
+import ru.objective.jni.tasks.types.MethodSignature;
+import ru.objective.jni.tasks.types.ObjCTypeResolver;
 
+import java.io.IOException;
 import java.util.HashSet;
 
 /**
@@ -36,6 +40,10 @@ public abstract class AbstractBuilder {
     protected String prefix;
     protected String[] excludes;
     protected String[] excludedPackages;
+    protected ObjCTypeResolver typeResolver;
+    // member rules and consumer sources usages, null when all members are exported
+    protected MemberRules memberRules;
+    protected UsageIndex usage;
 
     protected abstract void build(JavaClass javaClass) throws Exception;
 
@@ -48,13 +56,39 @@ public abstract class AbstractBuilder {
     }
 
     public AbstractBuilder(JavaClass javaClass, String prefix, String[] excludes, String[] excludedPackages) throws Exception {
+        this(javaClass, prefix, excludes, excludedPackages, null, null);
+    }
+
+    public AbstractBuilder(JavaClass javaClass, String prefix, String[] excludes, String[] excludedPackages,
+                           MemberRules memberRules, UsageIndex usage) throws Exception {
         this.javaClass = javaClass;
+        this.memberRules = memberRules;
+        this.usage = usage;
         this.prefix = prefix;
         this.excludes = excludes;
         this.excludedPackages = excludedPackages;
+        this.typeResolver = ObjCTypeResolver.forPrefix(prefix);
+
+        GenerationStats.enter(GenerationStats.Phase.BUILD);
+
+        try {
+            build(javaClass);
+        } finally {
+            GenerationStats.exit();
+        }
 
-        build(javaClass);
+    }
+
+    protected ObjCTypeResolver getTypeResolver() {
+        return typeResolver;
+    }
 
+    protected boolean isMemberExported(FieldOrMethod member) {
+        return memberRules == null || memberRules.isExported(javaClass.getClassName(), member);
+    }
+
+    protected boolean isMemberUsed(String... declarations) {
+        return usage == null || usage.isMemberUsed(declarations);
     }
 
     public JavaClass[] getInterfaces() {
@@ -78,28 +112,10 @@ public abstract class AbstractBuilder {
     protected String getHeaderDeclarationField(String name, Field field, boolean setter) {
         StringBuilder builder = new StringBuilder();
 
-        String returnType = Utility.signatureToString(field.getSignature());
-
-        returnType = Utils.getBasicType(returnType);
-
-        if (!Utils.isPrimitive(field.getType())) {
-            JavaClass typeJavaClass = OJNIClassLoader.getInstance().loadClass(field.getType().toString());
-
-            if (typeJavaClass != null && typeJavaClass.isInterface())
-                returnType = "id <" + getPrefix() + Utils.getShortClassName(returnType) + ">";
-            else
-                returnType = getPrefix() + Utils.getShortClassName(returnType) + " *";
-        }
-
-        if (Utils.isArrayType(field.getType()))
-            returnType = getStringArrayType(returnType, (ArrayType)field.getType());
-        else
-            returnType = PrimitiveTypeConverter.convertToOBJCType(returnType);
+        String resultType = getTypeResolver().getTypeName(JavaType.forDescriptor(field.getSignature()));
 
         String declSign = (field.isStatic() ? "+" : "-")+" ";
 
-        String resultType = PrimitiveTypeConverter.convertToOBJCType(returnType);
-
         if (setter) {
             if (!field.isFinal()) {
                 //generate set
@@ -119,7 +135,8 @@ public abstract class AbstractBuilder {
 
     protected String getHeaderDeclarationMethod(MethodExportInfo info, Method method, boolean overloaded) {
         StringBuilder stringBuilder = new StringBuilder();
-        String[] argumentTypes = Utility.methodSignatureArgumentTypes(method.getSignature());
+        MethodSignature signature = MethodSignature.forSignature(method.getSignature());
+        JavaType[] argumentTypes = signature.getArgumentTypes();
         String name = info.name;
 
 
@@ -136,25 +153,9 @@ public abstract class AbstractBuilder {
                 name = "_" + name;
             }
 
-            methodReturnType = Utility.methodSignatureReturnType(method.getSignature()).toString();
-
-            methodReturnType = Utils.getBasicType(methodReturnType);
-
-            if (!Utils.isPrimitive(method.getReturnType())) {
-                JavaClass typeJavaClass = OJNIClassLoader.getInstance().loadClass(method.getReturnType().toString());
-
-                if (typeJavaClass != null && typeJavaClass.isInterface())
-                    methodReturnType = "id <" + getPrefix() + Utils.getShortClassName(methodReturnType) + ">";
-                else
-                    methodReturnType = getPrefix() + Utils.getShortClassName(methodReturnType) + " *";
-            }
-
-            if (Utils.isArrayType(method.getReturnType()))
-                methodReturnType = getStringArrayType(methodReturnType, (ArrayType)method.getReturnType());
-            else
-                methodReturnType = PrimitiveTypeConverter.convertToOBJCType(methodReturnType);
+            methodReturnType = getTypeResolver().getTypeName(signature.getReturnType());
         }
-        stringBuilder.append((method.isStatic() ? "+" : "-")+" " + "("+PrimitiveTypeConverter.convertToOBJCType(methodReturnType)+")");
+        stringBuilder.append(method.isStatic() ? "+" : "-").append(" (").append(methodReturnType).append(")");
 
         String[] nameParameters = name.split(":");
 
@@ -167,8 +168,7 @@ public abstract class AbstractBuilder {
             stringBuilder.append(name);
 
         for (int i = 0, var_index = (method.isStatic() ? 0 : 1); i < argumentTypes.length; i++, var_index++) {
-            Type javaType = method.getArgumentTypes()[i];
-            String type = argumentTypes[i];
+            JavaType javaType = argumentTypes[i];
 
             String variable_name = "";
             if (table == null) {
@@ -180,48 +180,35 @@ public abstract class AbstractBuilder {
                 }
             }
 
-            if (javaType.equals(Type.LONG) || javaType.equals(Type.DOUBLE))
+            if (javaType.isWide())
                 var_index++;
 
             String nameParameter = (i < nameParameters.length ? nameParameters[i] : variable_name);
 
-            type = Utils.getBasicType(type);
-
             String overloadedParameter = "";
 
             if (overloaded) {
                 overloadedParameter = "With" + (i == 0 ? StringUtils.capitalize(variable_name) : "")
-                        + Utils.getShortClassName(type);/*+ StringUtils.capitalize(utils.getShortClassName(type));*/
-            }
-
-            if (!Utils.isPrimitive(javaType)) {
-                JavaClass argTypeJavaClass = OJNIClassLoader.getInstance().loadClass(javaType.toString());
-
-                if (argTypeJavaClass != null && argTypeJavaClass.isInterface())
-                    type = "id <" + getPrefix() + Utils.getShortClassName(type) + ">";
-                else
-                    type = getPrefix() + Utils.getShortClassName(type) + " *";
-            }
+                        + javaType.getShortName();
 
-            if (Utils.isArrayType(javaType)) {
-                if (overloaded) {
-                    int dimensions = ((ArrayType) javaType).getDimensions();
+                if (javaType.isArray()) {
+                    int dimensions = javaType.getDimensions();
 
                     if (dimensions > 1)
                         overloadedParameter += dimensions + "dimArray";
                     else
                         overloadedParameter += "Array";
                 }
-                type = getStringArrayType(type, (ArrayType) javaType);
-            } else {
-                type = PrimitiveTypeConverter.convertToOBJCType(type);
             }
 
+            String type = getTypeResolver().getTypeName(javaType);
+
             if (Utils.isOccupiedWord(variable_name)){
                 variable_name = "_" + variable_name;
             }
 
-            stringBuilder.append(nameParameter + overloadedParameter + ":(" + type + ")" + variable_name + " ");
+            stringBuilder.append(nameParameter).append(overloadedParameter).append(":(").append(type).append(")").
+                    append(variable_name).append(" ");
         }
 
         stringBuilder.append(";");
@@ -229,33 +216,6 @@ public abstract class AbstractBuilder {
         return stringBuilder.toString();
     }
 
-    protected String getStringArrayType(String type, ArrayType javaType) {
-
-        Type iteratorType = javaType;
-
-        int j = 1;
-
-        if (Utils.isPrimitive(iteratorType)) {
-            String capitalized = StringUtils.capitalize(type);
-
-            // fix Boolean = Bool conflicts
-            if (capitalized.equals("Bool"))
-                capitalized = "Boolean";
-
-            type = "OJNIPrimitive" + capitalized + "Array *";
-            j++;
-        }
-
-        for (; Utils.isArrayType(iteratorType) && j <= ((ArrayType)javaType).getDimensions(); j++) {
-
-            type = "NSArray <" + type + "> *";
-
-            iteratorType = ((ArrayType) iteratorType).getElementType();
-        }
-
-        return type;
-    }
-
     protected String getHeaderImportBlock(String superClassName, String[] interfaces, HashSet<String> dependencies, boolean implementation) {
         StringBuilder result = new StringBuilder();
 
@@ -290,18 +250,18 @@ public abstract class AbstractBuilder {
         }
 
         for (String importName : importClassNames) {
-            JavaClass importedClass = OJNIClassLoader.getInstance().loadClass(importName);
+            boolean importedIsInterface = OJNIClassLoader.getInstance().isInterface(importName);
 
             //if (importName.equals(superClassName) || getJavaClass().isInterface() || (importedClass != null && importedClass.isInterface()))
             if (implementation) {
-                if (importedClass != null && importedClass.isInterface())
+                if (importedIsInterface)
                     result.append(Utils.getImportTemplate(getPrefix() + Utils.getShortClassName(importName)));
                 else
                     result.append(Utils.getImportTemplate(getPrefix() + Utils.getShortClassName(importName)));
             } else {
                 if (importName.equals(superClassName))
                     result.append(Utils.getImportTemplate(getPrefix() + Utils.getShortClassName(importName)));
-                else if (importedClass != null && importedClass.isInterface())
+                else if (importedIsInterface)
                     result.append(Utils.getForwardInterfaceDeclarationTemplate(getPrefix() + Utils.getShortClassName(importName)));
                 else
                     result.append(Utils.getForwardDeclarationTemplate(getPrefix() + Utils.getShortClassName(importName)));
@@ -315,6 +275,14 @@ public abstract class AbstractBuilder {
         return result.toString();
     }
 
+    protected String getOJNIClassNameImplementation() {
+        String slashedClassName = Utils.getSlashedClassName(getJavaClass().getClassName());
+
+        return "+ (NSString *)OJNIClassName {" + System.lineSeparator() +
+                "return @\"" + slashedClassName + "\";" + System.lineSeparator() +
+                "}" + System.lineSeparator();
+    }
+
     protected String getInterfacesBlock(JavaClass[] interfaces) {
 
         if (interfaces == null || interfaces.length == 0)
@@ -341,7 +309,11 @@ public abstract class AbstractBuilder {
     }
 
 
-    public abstract String getHeader();
-    public abstract String getImplementation();
+    // header and implementation are emitted straight to output, without building whole files in memory,
+    // write methods are called only when the matching has method returns true
+    public abstract boolean hasHeader();
+    public abstract void writeHeader(Appendable output) throws IOException;
+    public abstract boolean hasImplementation();
+    public abstract void writeImplementation(Appendable output) throws IOException;
     public abstract HashSet<String> getDependencies();
 }
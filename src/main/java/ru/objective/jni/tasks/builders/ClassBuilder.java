@@ -17,18 +17,24 @@
 package ru.objective.jni.tasks.builders;
 
 import org.apache.commons.bcel6.classfile.*;
-import org.apache.commons.bcel6.generic.ArrayType;
-import org.apache.commons.bcel6.generic.Type;
 import org.apache.commons.lang3.StringUtils;
+import ru.objective.jni.utils.ClassMethodsInfo;
+import ru.objective.jni.utils.MemberRules;
 import ru.objective.jni.utils.MethodExportInfo;
 import ru.objective.jni.utils.OJNIClassLoader;
-import ru.objective.jni.utils.ResourceList;
+import ru.objective.jni.utils.Template;
+import ru.objective.jni.utils.UsageIndex;
 import ru.objective.jni.utils.Utils;
 import ru.objective.jni.constants.Constants;
 import ru.objective.jni.exceptions.BadParsingException;
+import ru.objective.jni.tasks.types.JavaType;
+import ru.objective.jni.tasks.types.MethodSignature;
+import ru.objective.jni.tasks.types.ObjCTypeResolver;
 import ru.objective.jni.tasks.types.PrimitiveTypeConverter;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 
 /**
@@ -36,22 +42,46 @@ import java.util.HashSet;
  */
 public class ClassBuilder extends AbstractBuilder {
 
-    protected String header;
-    protected String implementation;
     protected HashSet<String> dependencies;
 
+    // exported members with their declarations, selected by build and emitted by writeHeader and writeImplementation
+    private ArrayList<Field> exportedFields;
+    private ArrayList<String> exportedGetterDeclarations;
+    private ArrayList<String> exportedSetterDeclarations;
+    private ArrayList<Integer> exportedMethods;
+    private ArrayList<String> exportedMethodDeclarations;
+    private ClassMethodsInfo methodsInfo;
+
+    private HashMap<String, Object> headerValues;
+    private HashMap<String, Object> implementationValues;
+
     public ClassBuilder(JavaClass javaClass, String prefix, String[] excludes, String[] excludedPackages) throws Exception {
         super(javaClass, prefix, excludes, excludedPackages);
     }
 
+    public ClassBuilder(JavaClass javaClass, String prefix, String[] excludes, String[] excludedPackages,
+                        MemberRules memberRules, UsageIndex usage) throws Exception {
+        super(javaClass, prefix, excludes, excludedPackages, memberRules, usage);
+    }
+
+    @Override
+    public boolean hasHeader() {
+        return headerValues != null;
+    }
+
+    @Override
+    public void writeHeader(Appendable output) throws IOException {
+        Template.getResourceTemplate(Constants.TEMPLATE_HEADER_FILENAME).render(output, headerValues);
+    }
+
     @Override
-    public String getHeader() {
-        return header;
+    public boolean hasImplementation() {
+        return implementationValues != null;
     }
 
     @Override
-    public String getImplementation() {
-        return implementation;
+    public void writeImplementation(Appendable output) throws IOException {
+        Template.getResourceTemplate(Constants.TEMPLATE_IMPLEMENTATION_FILENAME).render(output, implementationValues);
     }
 
     @Override
@@ -62,9 +92,6 @@ public class ClassBuilder extends AbstractBuilder {
 
         if (Utils.isExportClass(javaClass, excludes, excludedPackages)) {
 
-            StringBuilder declBuilder = new StringBuilder();
-            StringBuilder implBuilder = new StringBuilder();
-
             Method[] methods = javaClass.getMethods();
             Field[] fields = javaClass.getFields();
 
@@ -87,44 +114,46 @@ public class ClassBuilder extends AbstractBuilder {
 
             HashSet<String> methodDependencies = new HashSet<>();
 
-            HashSet<Method> overloadedMethods = Utils.getOverloadedMethods(methods);
+            methodsInfo = new ClassMethodsInfo(methods);
+            exportedFields = new ArrayList<>(fields.length);
+            exportedGetterDeclarations = new ArrayList<>(fields.length);
+            exportedSetterDeclarations = new ArrayList<>(fields.length);
+            exportedMethods = new ArrayList<>(methods.length);
+            exportedMethodDeclarations = new ArrayList<>(methods.length);
 
             for (Field field : fields) {
+                JavaType fieldType = JavaType.forDescriptor(field.getSignature());
+
                 // skip field if excluded
-                if (Utils.isClassNameExcluded(field.getType().toString(), excludes, excludedPackages))
+                if (Utils.isClassNameExcluded(fieldType.toString(), excludes, excludedPackages))
                     continue;
 
                 String fieldName = Utils.getFieldExportName(field);
 
-                if (fieldName == null)
+                if (fieldName == null || !isMemberExported(field))
                     continue;
 
-                Type basicFieldType = Utils.basicTypeFromArrayType(field.getType());
+                String getterDeclaration = getHeaderDeclarationField(fieldName, field, false);
+                String setterDeclaration = getHeaderDeclarationField(fieldName, field, true);
 
-                if (!Utils.isPrimitive(basicFieldType))
-                    methodDependencies.add(basicFieldType.toString());
+                if (!isMemberUsed(getterDeclaration, setterDeclaration))
+                    continue;
 
-                String declgetter = getHeaderDeclarationField(fieldName, field, false);
-                String declsetter = getHeaderDeclarationField(fieldName, field, true);
-                declBuilder.append(declgetter);
-                declBuilder.append(System.lineSeparator());
-                declBuilder.append(declsetter);
-                declBuilder.append(System.lineSeparator());
+                if (!fieldType.isPrimitive())
+                    methodDependencies.add(fieldType.getBasicName());
 
-                String implgetter = getFieldImplementation(field, declgetter, false);
-                String implsetter = getFieldImplementation(field, declsetter, true);
-                implBuilder.append(implgetter);
-                implBuilder.append(System.lineSeparator());
-                implBuilder.append(implsetter);
-                implBuilder.append(System.lineSeparator());
+                exportedFields.add(field);
+                exportedGetterDeclarations.add(getterDeclaration);
+                exportedSetterDeclarations.add(setterDeclaration);
             }
 
-            for (Method method : methods) {
+            for (int i = 0; i < methods.length; i++) {
+                Method method = methods[i];
 
-                MethodExportInfo info = Utils.getMethodExportInfo(method);
+                MethodExportInfo info = methodsInfo.getExportInfo(i);
                 String name = info.name;
 
-                if (name == null)
+                if (name == null || !isMemberExported(method))
                     continue;
 
                 ArrayList<String> deps = Utils.getMethodNonPrimitiveDependencies(method);
@@ -140,25 +169,18 @@ public class ClassBuilder extends AbstractBuilder {
                     }
                     if (found)
                         continue;
-
-                    methodDependencies.addAll(deps);
                 }
 
+                String declaration = getHeaderDeclarationMethod(info, method, methodsInfo.isOverloaded(i));
 
-                String decl = getHeaderDeclarationMethod(info, method, overloadedMethods.contains(method));
-                declBuilder.append(decl);
-                declBuilder.append(System.lineSeparator());
+                if (!isMemberUsed(declaration))
+                    continue;
 
-                String impl = getMethodImplementation(method, decl);
-                implBuilder.append(impl);
-                implBuilder.append(System.lineSeparator());
-            }
+                if (deps != null)
+                    methodDependencies.addAll(deps);
 
-            // add core string methods decls
-            if (getJavaClass().getClassName().equals("java.lang.String")) {
-                declBuilder.append("- (instancetype)initWithNSString:(NSString *)string;").append(System.lineSeparator()).
-                        append("+ (instancetype)stringWithNSString:(NSString *)string;").append(System.lineSeparator()).
-                        append("- (NSString *)toNSString;").append(System.lineSeparator());
+                exportedMethods.add(i);
+                exportedMethodDeclarations.add(declaration);
             }
 
             if (methodDependencies.size() > 0) {
@@ -185,22 +207,73 @@ public class ClassBuilder extends AbstractBuilder {
             if (headerImportBlock != null && !headerImportBlock.equals(""))
                 implImportBlock = getHeaderImportBlock(superClassName, classInterfacesNames, dependencies, true);
 
-            implBuilder.append(getOJNIMethodsImplementations());
+            Template.Block declarationBlock = new Template.Block() {
+                @Override
+                public void writeTo(Appendable output) throws IOException {
+                    writeDeclarations(output);
+                }
+            };
+
+            Template.Block implementationBlock = new Template.Block() {
+                @Override
+                public void writeTo(Appendable output) throws IOException {
+                    writeImplementations(output);
+                }
+            };
 
                 generate(packageName, shortClassName, interfacesBlock,
                         Utils.getShortClassName(superClassName), headerImportBlock,
-                        declBuilder.toString(), "", implBuilder.toString(), implImportBlock);
+                        declarationBlock, "", implementationBlock, implImportBlock);
+        }
+    }
+
+    private void writeDeclarations(Appendable output) throws IOException {
+        for (int i = 0; i < exportedFields.size(); i++) {
+            output.append(exportedGetterDeclarations.get(i));
+            output.append(System.lineSeparator());
+            output.append(exportedSetterDeclarations.get(i));
+            output.append(System.lineSeparator());
+        }
+
+        for (String declaration : exportedMethodDeclarations) {
+            output.append(declaration);
+            output.append(System.lineSeparator());
+        }
+
+        // add core string methods decls
+        if (getJavaClass().getClassName().equals("java.lang.String")) {
+            output.append("- (instancetype)initWithNSString:(NSString *)string;").append(System.lineSeparator()).
+                    append("+ (instancetype)stringWithNSString:(NSString *)string;").append(System.lineSeparator()).
+                    append("- (NSString *)toNSString;").append(System.lineSeparator());
         }
     }
 
+    private void writeImplementations(Appendable output) throws IOException {
+        for (int i = 0; i < exportedFields.size(); i++) {
+            Field field = exportedFields.get(i);
+
+            output.append(getFieldImplementation(field, exportedGetterDeclarations.get(i), false));
+            output.append(System.lineSeparator());
+            output.append(getFieldImplementation(field, exportedSetterDeclarations.get(i), true));
+            output.append(System.lineSeparator());
+        }
+
+        Method[] methods = methodsInfo.getMethods();
+
+        for (int i = 0; i < exportedMethods.size(); i++) {
+            int index = exportedMethods.get(i);
+
+            output.append(getMethodImplementation(methods[index], exportedMethodDeclarations.get(i)));
+            output.append(System.lineSeparator());
+        }
+
+        output.append(getOJNIMethodsImplementations());
+    }
+
     private String getOJNIMethodsImplementations() {
         StringBuilder builder = new StringBuilder();
 
-        String slashedClassName = Utils.getSlashedClassName(getJavaClass().getClassName());
-
-        builder.append("+ (NSString *)OJNIClassName {").append(System.lineSeparator()).
-                append("return @\"").append(slashedClassName).append("\";").append(System.lineSeparator()).
-                append("}").append(System.lineSeparator());
+        builder.append(getOJNIClassNameImplementation());
 
         // special case for string
         if (getJavaClass().getClassName().equals("java.lang.String")) {
@@ -242,8 +315,8 @@ public class ClassBuilder extends AbstractBuilder {
         builder.append("signature:@\""+field.getSignature()+"\" inClass:self.class];");
         builder.append(System.lineSeparator());
 
-        Type returnType = field.getType();
-        String lowerCaseReturnType = (Utils.isPrimitive(returnType) && !Utils.isArrayType(returnType) ?
+        JavaType returnType = JavaType.forDescriptor(field.getSignature());
+        String lowerCaseReturnType = (returnType.isPrimitive() && !returnType.isArray() ?
                 returnType.toString() : "object");
         String capitalized = StringUtils.capitalize(lowerCaseReturnType);
 
@@ -261,54 +334,14 @@ public class ClassBuilder extends AbstractBuilder {
 
             String var_name = "property_" + field.getName();
 
-            if (Utils.isArrayType(returnType)) {
-                ArrayType arrayType = (ArrayType)returnType;
-                int dimensions = arrayType.getDimensions();
-                String typeString = arrayType.getBasicType().toString();
-                String capitalizedType = StringUtils.capitalize(typeString);
-
-                // fix Boolean = Bool conflicts
-                if (capitalizedType.equals("Bool"))
-                    capitalizedType = "Boolean";
-
-                if (arrayType.getDimensions() == 1 && Utils.isPrimitive(arrayType)) {
-                    builder.append("[__env newJava").append(capitalizedType).append("ArrayFromArray:").append(var_name).append("]");
-                } else {
-                    if (Utils.isPrimitive(arrayType)) {
-                        builder.append("[__env newJavaObjectArrayFromArray:").
-                                append(var_name).append(" baseClass:[OJNIPrimitive").append(capitalizedType).
-                                append("Array class]").
-                                append(" dimensions:").append(dimensions).append("]");
-
-                    } else {
-                        JavaClass argTypeJavaClass = OJNIClassLoader.getInstance().loadClass(typeString);
-
-                        String resultClassString = "";
-                        if (argTypeJavaClass != null && argTypeJavaClass.isInterface())
-                            resultClassString = "@\"" + Utils.getSlashedClassName(typeString) + "\"";
-                        else
-                            resultClassString = "[" + getPrefix() + Utils.getShortClassName(typeString) + " class]";
-
-                        builder.append("[__env newJavaObjectArrayFromArray:").
-                                append(var_name).append(" baseClass:").
-                                append(resultClassString).
-                                append(" dimensions:").append(dimensions).append("]");
-                    }
-                }
-            } else {
-                if (Utils.isPrimitive(returnType)) {
-                    builder.append(var_name);
-                } else {
-                    builder.append("[").append(var_name).append(" javaObject]");
-                }
-            }
+            builder.append(getArgumentObject(returnType, var_name));
             builder.append("];");
         } else { // getter
             builder.append("j").append(lowerCaseReturnType).append(" __obj = ").
                     append("[__env get").append(staticIdentifier).append(capitalized).
                     append("Field:").append(selfIdentitifer).append(" field:fid];").append(System.lineSeparator());
 
-            builder.append(generateReturnObject(field.getType()));
+            builder.append(generateReturnObject(returnType));
         }
 
         builder.append(System.lineSeparator()).append("}");
@@ -316,7 +349,7 @@ public class ClassBuilder extends AbstractBuilder {
         return builder.toString();
     }
 
-    private String getMethodImplementation(Method method, String declaration) {
+    protected String getMethodImplementation(Method method, String declaration) {
         StringBuilder builder = new StringBuilder();
 
         String vars = generateArgumentString(method);
@@ -332,7 +365,9 @@ public class ClassBuilder extends AbstractBuilder {
         builder.append(System.lineSeparator());
 
         // todo remove [self.class OJNIClass];
-        if (method.getReturnType().equals(Type.VOID)) {
+        JavaType returnType = MethodSignature.forSignature(method.getSignature()).getReturnType();
+
+        if (returnType.isVoid()) {
             if (Utils.isConstructor(method)) {
                 builder.append("jobject __obj = [__env newObject:[self.class OJNIClass] method:mid");
                 builder.append(vars).append("];").append(System.lineSeparator());
@@ -349,7 +384,7 @@ public class ClassBuilder extends AbstractBuilder {
             }
         } else {
             builder.append(generateCallMethod(method, vars));
-            builder.append(generateReturnObject(method.getReturnType()));
+            builder.append(generateReturnObject(returnType));
         }
 
         builder.append(System.lineSeparator()).append("}");
@@ -360,9 +395,9 @@ public class ClassBuilder extends AbstractBuilder {
     public String generateCallMethod(Method method, String vars) {
         StringBuilder builder = new StringBuilder();
 
-        Type returnType = method.getReturnType();
+        JavaType returnType = MethodSignature.forSignature(method.getSignature()).getReturnType();
 
-        if (Utils.isArrayType(returnType) || !Utils.isPrimitive(returnType)) {
+        if (returnType.isArray() || !returnType.isPrimitive()) {
             if (method.isStatic())
                 builder.append("jobject __obj = [__env callStaticObject");
             else
@@ -388,13 +423,13 @@ public class ClassBuilder extends AbstractBuilder {
     public String generateArgumentString(Method method) {
         StringBuilder builder = new StringBuilder();
 
-        Type[] types = method.getArgumentTypes();
+        JavaType[] types = MethodSignature.forSignature(method.getSignature()).getArgumentTypes();
         LocalVariableTable localVariableTable = method.getLocalVariableTable();
 
         for (int i = 0, var_index = (method.isStatic() ? 0 : 1); i < types.length; i++, var_index++) {
 //            if (localVariableTable != null && localVariableTable.getLocalVariable(var_index, 0) == null)
 //                System.gc();
-            Type type = types[i];
+            JavaType type = types[i];
             String var_name = "";
             if (localVariableTable == null) {
                 var_name = "arg" +var_index;
@@ -405,7 +440,7 @@ public class ClassBuilder extends AbstractBuilder {
                 }
             }
 
-            if (type.equals(Type.LONG) || type.equals(Type.DOUBLE))
+            if (type.isWide())
                 var_index++;
 
             if (Utils.isOccupiedWord(var_name)){
@@ -413,67 +448,67 @@ public class ClassBuilder extends AbstractBuilder {
             }
 
             builder.append(", ");
+            builder.append(getArgumentObject(type, var_name));
+        }
 
-            if (Utils.isArrayType(type)) {
-                ArrayType arrayType = (ArrayType)type;
-                int dimensions = arrayType.getDimensions();
-                String typeString = arrayType.getBasicType().toString();
-                String capitalizedType = StringUtils.capitalize(typeString);
+        return builder.toString();
+    }
 
-                // fix Boolean = Bool conflicts
-                if (capitalizedType.equals("Bool"))
-                    capitalizedType = "Boolean";
+    // converts Objective-C variable to java object or primitive passed to OJNIEnv
+    private String getArgumentObject(JavaType type, String var_name) {
+        StringBuilder builder = new StringBuilder();
 
-                if (arrayType.getDimensions() == 1 && Utils.isPrimitive(arrayType)) {
-                    //builder.append("[").append(var_name).append(" rawArray]");
-                    builder.append("[__env newJava").append(capitalizedType).append("ArrayFromArray:").append(var_name).append("]");
-                } else {
-                    if (Utils.isPrimitive(arrayType)) {
-                        builder.append("[__env newJavaObjectArrayFromArray:").
-                                append(var_name).append(" baseClass:[OJNIPrimitive").append(capitalizedType).
-                                append("Array class]").
-                                append(" dimensions:").append(dimensions).append("]");
-
-                    } else {
-                        JavaClass argTypeJavaClass = OJNIClassLoader.getInstance().loadClass(typeString);
-
-                        String resultClassString = "";
-                        if (argTypeJavaClass != null && argTypeJavaClass.isInterface())
-                            resultClassString = "@\"" + Utils.getSlashedClassName(typeString) + "\"";
-                        else
-                            resultClassString = "[" + getPrefix() + Utils.getShortClassName(typeString) + " class]";
-
-                        builder.append("[__env newJavaObjectArrayFromArray:").
-                                append(var_name).append(" baseClass:").
-                                append(resultClassString).
-                                append(" dimensions:").append(dimensions).append("]");
-                    }
-                }
+        if (type.isArray()) {
+            int dimensions = type.getDimensions();
+
+            if (dimensions == 1 && type.isPrimitive()) {
+                //builder.append("[").append(var_name).append(" rawArray]");
+                builder.append("[__env newJava").append(ObjCTypeResolver.getPrimitiveArrayName(type)).
+                        append("ArrayFromArray:").append(var_name).append("]");
             } else {
-                if (Utils.isPrimitive(type)) {
-                    builder.append(var_name);
+                if (type.isPrimitive()) {
+                    builder.append("[__env newJavaObjectArrayFromArray:").
+                            append(var_name).append(" baseClass:[OJNIPrimitive").
+                            append(ObjCTypeResolver.getPrimitiveArrayName(type)).
+                            append("Array class]").
+                            append(" dimensions:").append(dimensions).append("]");
+
                 } else {
-                    builder.append("[").append(var_name).append(" javaObject]");
+                    String typeString = type.getBasicName();
+                    boolean argTypeIsInterface = OJNIClassLoader.getInstance().isInterface(typeString);
+
+                    String resultClassString = "";
+                    if (argTypeIsInterface)
+                        resultClassString = "@\"" + Utils.getSlashedClassName(typeString) + "\"";
+                    else
+                        resultClassString = "[" + getPrefix() + type.getShortName() + " class]";
+
+                    builder.append("[__env newJavaObjectArrayFromArray:").
+                            append(var_name).append(" baseClass:").
+                            append(resultClassString).
+                            append(" dimensions:").append(dimensions).append("]");
                 }
             }
+        } else {
+            if (type.isPrimitive()) {
+                builder.append(var_name);
+            } else {
+                builder.append("[").append(var_name).append(" javaObject]");
+            }
         }
 
         return builder.toString();
     }
 
-    public String generateReturnObject(Type returnType) {
+    public String generateReturnObject(JavaType returnType) {
         StringBuilder builder = new StringBuilder();
 
-        if (Utils.isArrayType(returnType)) {
-            ArrayType arrReturnType = (ArrayType) returnType;
-            int dimensions = arrReturnType.getDimensions();
-            String capitalizedType = StringUtils.capitalize(arrReturnType.getBasicType().toString());
+        if (returnType.isArray()) {
+            int dimensions = returnType.getDimensions();
 
-            // fix Boolean = Bool conflicts
-            if (capitalizedType.equals("Bool"))
-                capitalizedType = "Boolean";
+            if (returnType.isPrimitive()) {
+                String capitalizedType = ObjCTypeResolver.getPrimitiveArrayName(returnType);
 
-            if (Utils.isPrimitive(arrReturnType)) {
                 if (dimensions == 1) {
                     builder.append("OJNIPrimitiveArray *__return = ");
                     builder.append("[__env primitive").
@@ -492,7 +527,7 @@ public class ClassBuilder extends AbstractBuilder {
                         append(getPrefix()).append("\" dimensions:").append(dimensions).append("];");
             }
         } else {
-            if (Utils.isPrimitive(returnType)) {
+            if (returnType.isPrimitive()) {
                 builder.append(PrimitiveTypeConverter.convertToOBJCType(returnType.toString())).append(" __return = ");
                 builder.append("__obj;");
             } else {
@@ -511,29 +546,25 @@ public class ClassBuilder extends AbstractBuilder {
 
     public void generate(String packageName, String className,
                          String interfacesBlock, String superClassName,
-                         String importBlock, String declarationBlock,
-                         String deallocBlock, String implementationBlock,
+                         String importBlock, Template.Block declarationBlock,
+                         String deallocBlock, Template.Block implementationBlock,
                          String implementationImportBlock) throws Exception {
-        String headerTemplate = ResourceList.getStringContentFromResource(Constants.TEMPLATE_HEADER_FILENAME);
-
         String superClassNameResult = (Utils.isOBJCSystemClass(superClassName) ? superClassName : getPrefix() + superClassName);
 
-        headerTemplate = headerTemplate.replace(Constants.CLASS_NAME, getPrefix()+className);
-        headerTemplate = headerTemplate.replace(Constants.SUPERCLASS_NAME, superClassNameResult);
-        headerTemplate = headerTemplate.replace(Constants.IMPORT_BLOCK, importBlock);
-        headerTemplate = headerTemplate.replace(Constants.DECLARATION_BLOCK, declarationBlock);
-        headerTemplate = headerTemplate.replace(Constants.INTERFACES_IMPLEMENTS, interfacesBlock);
-
-        String implementationTemplate = ResourceList.getStringContentFromResource(Constants.TEMPLATE_IMPLEMENTATION_FILENAME);
+        headerValues = new HashMap<>();
 
-        implementationTemplate = implementationTemplate.replace(Constants.CLASS_NAME, getPrefix()+className);
-        implementationTemplate = implementationTemplate.replace(Constants.DEALLOC_BLOCK, deallocBlock);
-        implementationTemplate = implementationTemplate.replace(Constants.IMPLEMENTATION_BLOCK, implementationBlock);
-        implementationTemplate = implementationTemplate.replace(Constants.IMPORT_BLOCK, implementationImportBlock);
+        headerValues.put(Constants.CLASS_NAME, getPrefix()+className);
+        headerValues.put(Constants.SUPERCLASS_NAME, superClassNameResult);
+        headerValues.put(Constants.IMPORT_BLOCK, importBlock);
+        headerValues.put(Constants.DECLARATION_BLOCK, declarationBlock);
+        headerValues.put(Constants.INTERFACES_IMPLEMENTS, interfacesBlock);
 
+        implementationValues = new HashMap<>();
 
-        header = headerTemplate;
-        implementation = implementationTemplate;
+        implementationValues.put(Constants.CLASS_NAME, getPrefix()+className);
+        implementationValues.put(Constants.DEALLOC_BLOCK, deallocBlock);
+        implementationValues.put(Constants.IMPLEMENTATION_BLOCK, implementationBlock);
+        implementationValues.put(Constants.IMPORT_BLOCK, implementationImportBlock);
     }
 
     @Override
@@ -18,13 +18,18 @@ package ru.objective.jni.tasks.builders;
 
 import org.apache.commons.bcel6.classfile.JavaClass;
 import org.apache.commons.bcel6.classfile.Method;
+import ru.objective.jni.utils.ClassMethodsInfo;
+import ru.objective.jni.utils.MemberRules;
 import ru.objective.jni.utils.MethodExportInfo;
-import ru.objective.jni.utils.ResourceList;
+import ru.objective.jni.utils.Template;
+import ru.objective.jni.utils.UsageIndex;
 import ru.objective.jni.utils.Utils;
 import ru.objective.jni.constants.Constants;
 import ru.objective.jni.exceptions.BadParsingException;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 
 /**
@@ -32,14 +37,22 @@ import java.util.HashSet;
  */
 public class InterfaceBuilder extends AbstractBuilder {
 
-    protected String header;
-    protected String implementation;
     protected HashSet<String> dependencies;
 
+    // declarations of exported methods, selected by build and emitted by writeHeader
+    private ArrayList<String> exportedMethodDeclarations;
+
+    private HashMap<String, Object> headerValues;
+
     public InterfaceBuilder(JavaClass javaClass, String prefix, String[] excludes, String[] excludedPackages) throws Exception {
         super(javaClass, prefix, excludes, excludedPackages);
     }
 
+    public InterfaceBuilder(JavaClass javaClass, String prefix, String[] excludes, String[] excludedPackages,
+                            MemberRules memberRules, UsageIndex usage) throws Exception {
+        super(javaClass, prefix, excludes, excludedPackages, memberRules, usage);
+    }
+
     @Override
     protected void build(JavaClass javaClass) throws Exception {
 
@@ -48,8 +61,6 @@ public class InterfaceBuilder extends AbstractBuilder {
 
         if (Utils.isExportClass(javaClass, excludes, excludedPackages)) {
 
-            StringBuilder declBuilder = new StringBuilder();
-
             Method[] methods = javaClass.getMethods();
 
             JavaClass[] interfaces = getInterfaces();
@@ -71,14 +82,16 @@ public class InterfaceBuilder extends AbstractBuilder {
 
             HashSet<String> methodDependencies = new HashSet<>();
 
-            HashSet<Method> overloadedMethods = Utils.getOverloadedMethods(methods);
+            ClassMethodsInfo methodsInfo = new ClassMethodsInfo(methods);
+            exportedMethodDeclarations = new ArrayList<>(methods.length);
 
-            for (Method method : methods) {
+            for (int i = 0; i < methods.length; i++) {
+                Method method = methods[i];
 
-                MethodExportInfo info = Utils.getMethodExportInfo(method);
+                MethodExportInfo info = methodsInfo.getExportInfo(i);
                 String name = info.name;
 
-                if (name == null)
+                if (name == null || !isMemberExported(method))
                     continue;
 
                 ArrayList<String> deps = Utils.getMethodNonPrimitiveDependencies(method);
@@ -94,13 +107,17 @@ public class InterfaceBuilder extends AbstractBuilder {
                     }
                     if (found)
                         continue;
+                }
+
+                String declaration = getHeaderDeclarationMethod(info, method, methodsInfo.isOverloaded(i));
 
+                if (!isMemberUsed(declaration))
+                    continue;
+
+                if (deps != null)
                     methodDependencies.addAll(deps);
-                }
 
-                String decl = getHeaderDeclarationMethod(info, method, overloadedMethods.contains(method));
-                declBuilder.append(decl);
-                declBuilder.append(System.lineSeparator());
+                exportedMethodDeclarations.add(declaration);
             }
 
             if (methodDependencies.size() > 0) {
@@ -112,32 +129,52 @@ public class InterfaceBuilder extends AbstractBuilder {
             String interfacesBlock = getInterfacesBlock(interfaces);
             String headerImportBlock = getHeaderImportBlock(null, classInterfacesNames, dependencies, false);
 
-            generate(packageName, shortClassName, headerImportBlock, interfacesBlock, declBuilder.toString());
+            Template.Block declarationBlock = new Template.Block() {
+                @Override
+                public void writeTo(Appendable output) throws IOException {
+                    writeDeclarations(output);
+                }
+            };
+
+            generate(packageName, shortClassName, headerImportBlock, interfacesBlock, declarationBlock);
         }
     }
 
-    public void generate(String packageName, String interfaceName, String importBlock,
-                                  String interfaceImplemensBlock, String declarationBlock) throws Exception {
-        String headerTemplate = ResourceList.getStringContentFromResource(Constants.TEMPLATE_INTERFACE_FILENAME);
+    private void writeDeclarations(Appendable output) throws IOException {
+        for (String declaration : exportedMethodDeclarations) {
+            output.append(declaration);
+            output.append(System.lineSeparator());
+        }
+    }
 
+    public void generate(String packageName, String interfaceName, String importBlock,
+                                  String interfaceImplemensBlock, Template.Block declarationBlock) throws Exception {
+        headerValues = new HashMap<>();
 
-        headerTemplate = headerTemplate.replace(Constants.INTERFACE_NAME, getPrefix()+interfaceName);
-        headerTemplate = headerTemplate.replace(Constants.INTERFACES_IMPLEMENTS, interfaceImplemensBlock);
-        headerTemplate = headerTemplate.replace(Constants.DECLARATION_BLOCK, declarationBlock);
-        headerTemplate = headerTemplate.replace(Constants.IMPORT_BLOCK, importBlock);
+        headerValues.put(Constants.INTERFACE_NAME, getPrefix()+interfaceName);
+        headerValues.put(Constants.INTERFACES_IMPLEMENTS, interfaceImplemensBlock);
+        headerValues.put(Constants.DECLARATION_BLOCK, declarationBlock);
+        headerValues.put(Constants.IMPORT_BLOCK, importBlock);
+    }
 
+    @Override
+    public boolean hasHeader() {
+        return headerValues != null;
+    }
 
-        header = headerTemplate;
+    @Override
+    public void writeHeader(Appendable output) throws IOException {
+        Template.getResourceTemplate(Constants.TEMPLATE_INTERFACE_FILENAME).render(output, headerValues);
     }
 
     @Override
-    public String getHeader() {
-        return header;
+    public boolean hasImplementation() {
+        return false;
     }
 
+    // interface is emitted as protocol in header only, hasImplementation is false, so nothing is written
     @Override
-    public String getImplementation() {
-        return implementation;
+    public void writeImplementation(Appendable output) throws IOException {
     }
 
     @Override
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.objective.jni.tasks.builders;
+
+import org.apache.commons.bcel6.classfile.JavaClass;
+import ru.objective.jni.utils.Template;
+import ru.objective.jni.utils.Utils;
+import ru.objective.jni.constants.Constants;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Opaque wrapper of class beyond --max-depth: @interface with superclass or @protocol,
+ * OJNIClassName and no members. Interfaces and member types are not followed,
+ * so stub needs only its superclass.
+ */
+public class StubBuilder extends AbstractBuilder {
+
+    private HashMap<String, Object> headerValues;
+    private HashMap<String, Object> implementationValues;
+
+    public StubBuilder(JavaClass javaClass, String prefix, String[] excludes, String[] excludedPackages) throws Exception {
+        super(javaClass, prefix, excludes, excludedPackages);
+    }
+
+    @Override
+    protected void build(JavaClass javaClass) throws Exception {
+        if (!Utils.isExportClass(javaClass, excludes, excludedPackages))
+            return;
+
+        String packageName = javaClass.getPackageName();
+        String shortClassName = getPrefix() + Utils.getShortClassName(packageName, javaClass.getClassName());
+
+        headerValues = new HashMap<>();
+        headerValues.put(Constants.DECLARATION_BLOCK, "");
+
+        if (javaClass.isInterface()) {
+            headerValues.put(Constants.INTERFACE_NAME, shortClassName);
+            headerValues.put(Constants.INTERFACES_IMPLEMENTS, getInterfacesBlock(null));
+            headerValues.put(Constants.IMPORT_BLOCK, getHeaderImportBlock(null, null, null, false));
+
+            return;
+        }
+
+        String superClassName = Constants.OBJC_SYSTEM_CLASS;
+        JavaClass superClass = getSuperClass();
+
+        if (superClass != null && Utils.isExportClass(superClass, excludes, excludedPackages))
+            superClassName = superClass.getClassName();
+
+        headerValues.put(Constants.CLASS_NAME, shortClassName);
+        headerValues.put(Constants.SUPERCLASS_NAME, (Utils.isOBJCSystemClass(superClassName) ? superClassName :
+                getPrefix() + Utils.getShortClassName(superClassName)));
+        headerValues.put(Constants.INTERFACES_IMPLEMENTS, "");
+        headerValues.put(Constants.IMPORT_BLOCK, getHeaderImportBlock(superClassName, null, null, false));
+
+        implementationValues = new HashMap<>();
+        implementationValues.put(Constants.CLASS_NAME, shortClassName);
+        implementationValues.put(Constants.IMPORT_BLOCK, "");
+        implementationValues.put(Constants.DEALLOC_BLOCK, "");
+        implementationValues.put(Constants.IMPLEMENTATION_BLOCK, getOJNIClassNameImplementation());
+    }
+
+    @Override
+    public JavaClass[] getInterfaces() {
+        return null;
+    }
+
+    @Override
+    public boolean hasHeader() {
+        return headerValues != null;
+    }
+
+    @Override
+    public void writeHeader(Appendable output) throws IOException {
+        Template.getResourceTemplate(getJavaClass().isInterface() ? Constants.TEMPLATE_INTERFACE_FILENAME :
+                Constants.TEMPLATE_HEADER_FILENAME).render(output, headerValues);
+    }
+
+    @Override
+    public boolean hasImplementation() {
+        return implementationValues != null;
+    }
+
+    @Override
+    public void writeImplementation(Appendable output) throws IOException {
+        Template.getResourceTemplate(Constants.TEMPLATE_IMPLEMENTATION_FILENAME).render(output, implementationValues);
+    }
+
+    @Override
+    public HashSet<String> getDependencies() {
+        return null;
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.objective.jni.tasks.types;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Parsed java type descriptor, e.g. I, [[Ljava/lang/String;
+ * Instances are interned until classpaths are reloaded, so each descriptor is parsed once per run.
+ */
+public class JavaType {
+
+    private static final ConcurrentHashMap<String, JavaType> TYPES = new ConcurrentHashMap<>();
+
+    private final String descriptor;
+    // primitive keyword or dotted class name of array element
+    private final String basicName;
+    private final String shortName;
+    private final int dimensions;
+    private final boolean primitive;
+
+    private JavaType(String descriptor, String basicName, int dimensions, boolean primitive) {
+        this.descriptor = descriptor;
+        this.basicName = basicName;
+        this.shortName = basicName.substring(basicName.lastIndexOf('.') + 1);
+        this.dimensions = dimensions;
+        this.primitive = primitive;
+    }
+
+    public static JavaType forDescriptor(String descriptor) {
+        JavaType type = TYPES.get(descriptor);
+
+        if (type != null)
+            return type;
+
+        type = parse(descriptor);
+
+        JavaType previous = TYPES.putIfAbsent(descriptor, type);
+
+        return (previous != null ? previous : type);
+    }
+
+    /**
+     * Drops interned types, e.g. when daemon reloads classpaths.
+     */
+    public static void clearInterned() {
+        TYPES.clear();
+    }
+
+    /**
+     * Returns type of signature part from start to end, see getDescriptorEnd.
+     */
+    static JavaType forDescriptor(String signature, int start, int end) {
+        if (start == 0 && end == signature.length())
+            return forDescriptor(signature);
+
+        return forDescriptor(signature.substring(start, end));
+    }
+
+    /**
+     * Returns index right after the type descriptor starting at given index.
+     */
+    static int getDescriptorEnd(String signature, int start) {
+        int index = start;
+
+        while (signature.charAt(index) == '[')
+            index++;
+
+        if (signature.charAt(index) == 'L')
+            return signature.indexOf(';', index) + 1;
+
+        return index + 1;
+    }
+
+    private static JavaType parse(String descriptor) {
+        int index = 0;
+        int end = descriptor.length();
+
+        while (index < end && descriptor.charAt(index) == '[')
+            index++;
+
+        int dimensions = index;
+
+        if (index >= end)
+            throw new IllegalArgumentException("Invalid type descriptor " + descriptor);
+
+        char tag = descriptor.charAt(index);
+
+        if (tag == 'L') {
+            if (descriptor.charAt(end - 1) != ';')
+                throw new IllegalArgumentException("Invalid type descriptor " + descriptor);
+
+            String className = descriptor.substring(index + 1, end - 1).replace('/', '.');
+
+            return new JavaType(descriptor, className, dimensions, false);
+        }
+
+        return new JavaType(descriptor, getPrimitiveName(tag, descriptor), dimensions, true);
+    }
+
+    private static String getPrimitiveName(char tag, String descriptor) {
+        switch (tag) {
+            case 'B': return "byte";
+            case 'C': return "char";
+            case 'D': return "double";
+            case 'F': return "float";
+            case 'I': return "int";
+            case 'J': return "long";
+            case 'S': return "short";
+            case 'Z': return "boolean";
+            case 'V': return "void";
+            default:
+                throw new IllegalArgumentException("Invalid type descriptor " + descriptor);
+        }
+    }
+
+    public String getDescriptor() {
+        return descriptor;
+    }
+
+    /**
+     * Primitive keyword or dotted class name, array dimensions are dropped.
+     */
+    public String getBasicName() {
+        return basicName;
+    }
+
+    /**
+     * Basic name without package.
+     */
+    public String getShortName() {
+        return shortName;
+    }
+
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    public boolean isArray() {
+        return dimensions > 0;
+    }
+
+    /**
+     * True for primitives and arrays of primitives.
+     */
+    public boolean isPrimitive() {
+        return primitive;
+    }
+
+    public boolean isVoid() {
+        return dimensions == 0 && basicName.equals("void");
+    }
+
+    /**
+     * Non array long and double take two local variable slots.
+     */
+    public boolean isWide() {
+        return dimensions == 0 && primitive && (basicName.equals("long") || basicName.equals("double"));
+    }
+
+    /**
+     * Same as BCEL Type.toString(): basic name followed by [] per dimension.
+     */
+    @Override
+    public String toString() {
+        if (dimensions == 0)
+            return basicName;
+
+        StringBuilder result = new StringBuilder(basicName);
+
+        for (int i = 0; i < dimensions; i++) {
+            result.append("[]");
+        }
+
+        return result.toString();
+    }
+}
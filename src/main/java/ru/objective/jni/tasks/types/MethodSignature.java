@@ -0,0 +1,87 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.objective.jni.tasks.types;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Parsed method signature, e.g. (ILjava/lang/String;)V
+ * Instances are interned until classpaths are reloaded, so each signature is parsed once per run.
+ */
+public class MethodSignature {
+
+    private static final ConcurrentHashMap<String, MethodSignature> SIGNATURES = new ConcurrentHashMap<>();
+
+    private final JavaType returnType;
+    private final JavaType[] argumentTypes;
+
+    private MethodSignature(JavaType returnType, JavaType[] argumentTypes) {
+        this.returnType = returnType;
+        this.argumentTypes = argumentTypes;
+    }
+
+    public static MethodSignature forSignature(String signature) {
+        MethodSignature result = SIGNATURES.get(signature);
+
+        if (result != null)
+            return result;
+
+        result = parse(signature);
+
+        MethodSignature previous = SIGNATURES.putIfAbsent(signature, result);
+
+        return (previous != null ? previous : result);
+    }
+
+    /**
+     * Drops interned signatures, e.g. when daemon reloads classpaths.
+     */
+    public static void clearInterned() {
+        SIGNATURES.clear();
+    }
+
+    private static MethodSignature parse(String signature) {
+        if (signature.isEmpty() || signature.charAt(0) != '(')
+            throw new IllegalArgumentException("Invalid method signature " + signature);
+
+        ArrayList<JavaType> arguments = new ArrayList<>();
+        int index = 1;
+
+        while (signature.charAt(index) != ')') {
+            int end = JavaType.getDescriptorEnd(signature, index);
+
+            arguments.add(JavaType.forDescriptor(signature, index, end));
+            index = end;
+        }
+
+        JavaType returnType = JavaType.forDescriptor(signature, index + 1, signature.length());
+
+        return new MethodSignature(returnType, arguments.toArray(new JavaType[arguments.size()]));
+    }
+
+    public JavaType getReturnType() {
+        return returnType;
+    }
+
+    /**
+     * Shared array, must not be modified.
+     */
+    public JavaType[] getArgumentTypes() {
+        return argumentTypes;
+    }
+}
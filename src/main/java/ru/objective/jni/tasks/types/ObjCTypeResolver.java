@@ -0,0 +1,122 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.objective.jni.tasks.types;
+
+import org.apache.commons.lang3.StringUtils;
+import ru.objective.jni.utils.OJNIClassLoader;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves Objective-C spelling of java types for one class prefix,
+ * e.g. int, id <PFoo>, PFoo *, OJNIPrimitiveIntArray *, NSArray <PFoo *> *
+ * Spellings are memoized per type, both for class and interface case,
+ * interface check itself is cached by OJNIClassLoader.
+ */
+public class ObjCTypeResolver {
+
+    private static final ConcurrentHashMap<String, ObjCTypeResolver> RESOLVERS = new ConcurrentHashMap<>();
+
+    private final String prefix;
+
+    private final ConcurrentHashMap<JavaType, String> classSpellings = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<JavaType, String> interfaceSpellings = new ConcurrentHashMap<>();
+
+    private ObjCTypeResolver(String prefix) {
+        this.prefix = prefix;
+    }
+
+    public static ObjCTypeResolver forPrefix(String prefix) {
+        ObjCTypeResolver result = RESOLVERS.get(prefix);
+
+        if (result != null)
+            return result;
+
+        result = new ObjCTypeResolver(prefix);
+
+        ObjCTypeResolver previous = RESOLVERS.putIfAbsent(prefix, result);
+
+        return (previous != null ? previous : result);
+    }
+
+    /**
+     * Drops resolvers with their memoized spellings, e.g. when daemon reloads classpaths.
+     */
+    public static void clearResolvers() {
+        RESOLVERS.clear();
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public String getTypeName(JavaType type) {
+        boolean isInterface = !type.isPrimitive() && OJNIClassLoader.getInstance().isInterface(type.getBasicName());
+
+        ConcurrentHashMap<JavaType, String> spellings = (isInterface ? interfaceSpellings : classSpellings);
+
+        String result = spellings.get(type);
+
+        if (result == null) {
+            result = spell(type, isInterface);
+            spellings.put(type, result);
+        }
+
+        return result;
+    }
+
+    private String spell(JavaType type, boolean isInterface) {
+        String result;
+
+        if (type.isPrimitive())
+            result = type.getBasicName();
+        else if (isInterface)
+            result = "id <" + prefix + type.getShortName() + ">";
+        else
+            result = prefix + type.getShortName() + " *";
+
+        if (!type.isArray())
+            return PrimitiveTypeConverter.convertToOBJCType(result);
+
+        int wrappers = type.getDimensions();
+
+        // innermost dimension of primitive array is OJNIPrimitiveArray
+        if (type.isPrimitive()) {
+            result = "OJNIPrimitive" + getPrimitiveArrayName(type) + "Array *";
+            wrappers--;
+        }
+
+        for (int i = 0; i < wrappers; i++) {
+            result = "NSArray <" + result + "> *";
+        }
+
+        return result;
+    }
+
+    /**
+     * Capitalized primitive name used by OJNIPrimitive*Array and OJNIEnv array methods, e.g. Int, Boolean.
+     */
+    public static String getPrimitiveArrayName(JavaType type) {
+        String capitalized = StringUtils.capitalize(type.getBasicName());
+
+        // fix Boolean = Bool conflicts
+        if (capitalized.equals("Bool"))
+            capitalized = "Boolean";
+
+        return capitalized;
+    }
+}
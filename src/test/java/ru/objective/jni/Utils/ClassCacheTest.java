@@ -0,0 +1,171 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.objective.jni.utils;
+
+import org.apache.commons.bcel6.classfile.ClassParser;
+import org.apache.commons.bcel6.classfile.JavaClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.InputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ClassCacheTest {
+
+    // estimated heap size of class with class file size of 100 bytes
+    private static final long CLASS_SIZE = 400;
+
+    private static final Object OWNER = new Object();
+
+    private static JavaClass objectClass;
+    private static JavaClass stringClass;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        objectClass = parse("java/lang/Object.class");
+        stringClass = parse("java/lang/String.class");
+    }
+
+    private static JavaClass parse(String fileName) throws Exception {
+        try (InputStream stream = ClassLoader.getSystemResourceAsStream(fileName)) {
+            return new ClassParser(stream, fileName).parse();
+        }
+    }
+
+    private static ClassCache cache(long maxSize) {
+        // one segment, so eviction order is the global one
+        ClassCache cache = new ClassCache(1);
+        cache.setMaxSize(maxSize);
+
+        return cache;
+    }
+
+    private static void put(ClassCache cache, String... classNames) {
+        for (String className : classNames) {
+            cache.putIfAbsent(OWNER, className, objectClass, 100);
+        }
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedFirst() {
+        ClassCache cache = cache(3 * CLASS_SIZE);
+
+        put(cache, "a.A", "b.B", "c.C");
+        assertNotNull(cache.get(OWNER, "a.A"));
+
+        put(cache, "d.D");
+
+        assertNull(cache.get(OWNER, "b.B"));
+        assertNotNull(cache.get(OWNER, "c.C"));
+
+        // access order is now a.A, d.D, c.C
+        put(cache, "e.E");
+
+        assertNull(cache.get(OWNER, "a.A"));
+        assertNotNull(cache.get(OWNER, "d.D"));
+        assertNotNull(cache.get(OWNER, "e.E"));
+        assertEquals(3, cache.getCount());
+        assertEquals(3 * CLASS_SIZE, cache.getSize());
+    }
+
+    @Test
+    public void keepsLastClassEvenIfItDoesNotFit() {
+        ClassCache cache = cache(1);
+
+        put(cache, "a.A", "b.B");
+
+        assertNull(cache.get(OWNER, "a.A"));
+        assertNotNull(cache.get(OWNER, "b.B"));
+        assertEquals(1, cache.getCount());
+    }
+
+    @Test
+    public void evictsWhenBudgetIsLowered() {
+        ClassCache cache = cache(Long.MAX_VALUE);
+
+        put(cache, "a.A", "b.B", "c.C");
+        cache.setMaxSize(CLASS_SIZE);
+
+        assertEquals(1, cache.getCount());
+        assertNotNull(cache.get(OWNER, "c.C"));
+    }
+
+    @Test
+    public void returnsClassStoredFirst() {
+        ClassCache cache = cache(Long.MAX_VALUE);
+
+        assertSame(objectClass, cache.putIfAbsent(OWNER, "a.A", objectClass, 100));
+        assertSame(objectClass, cache.putIfAbsent(OWNER, "a.A", stringClass, 100));
+
+        cache.put(OWNER, "a.A", stringClass, 200);
+
+        assertSame(stringClass, cache.get(OWNER, "a.A"));
+        assertEquals(2 * CLASS_SIZE, cache.getSize());
+    }
+
+    @Test
+    public void keepsClassHeadersWithinSameBudget() {
+        ClassCache cache = cache(Long.MAX_VALUE);
+        ClassFileInfo info = new ClassFileInfo(0, "a.A", "java.lang.Object", new String[0], false, false);
+
+        assertSame(info, cache.putInfoIfAbsent(OWNER, "a.A", info));
+        assertSame(info, cache.getInfo(OWNER, "a.A"));
+        assertTrue(cache.getSize() > 0);
+
+        put(cache, "b.B");
+        cache.setMaxSize(CLASS_SIZE);
+
+        assertNull(cache.getInfo(OWNER, "a.A"));
+        assertNotNull(cache.get(OWNER, "b.B"));
+    }
+
+    @Test
+    public void removesClassesOfOwnerOnly() {
+        ClassCache cache = cache(Long.MAX_VALUE);
+        Object otherOwner = new Object();
+
+        put(cache, "a.A", "b.B");
+        cache.putIfAbsent(otherOwner, "a.A", stringClass, 100);
+
+        cache.removeAll(OWNER);
+
+        assertNull(cache.get(OWNER, "a.A"));
+        assertSame(stringClass, cache.get(otherOwner, "a.A"));
+        assertEquals(CLASS_SIZE, cache.getSize());
+    }
+
+    @Test
+    public void splitsBudgetBetweenSegments() {
+        ClassCache cache = new ClassCache();
+        long maxSize = 32 * CLASS_SIZE;
+
+        cache.setMaxSize(maxSize);
+
+        for (int i = 0; i < 1000; i++) {
+            put(cache, "a.A" + i);
+        }
+
+        assertTrue(cache.getSize() <= maxSize);
+        assertTrue(cache.getCount() > 0);
+        assertEquals(maxSize, cache.getMaxSize());
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.objective.jni.utils;
+
+import org.apache.commons.bcel6.classfile.ClassParser;
+import org.apache.commons.bcel6.classfile.JavaClass;
+import org.junit.Test;
+import ru.objective.jni.exceptions.BadParsingException;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ClassFileReaderTest {
+
+    @Retention(RetentionPolicy.RUNTIME)
+    private @interface Marker {}
+
+    private static ClassFileInfo read(Class<?> type) throws Exception {
+        try (InputStream stream = getClassStream(type)) {
+            return ClassFileReader.read(stream);
+        }
+    }
+
+    private static InputStream getClassStream(Class<?> type) {
+        return ClassLoader.getSystemResourceAsStream(type.getName().replace('.', '/') + ".class");
+    }
+
+    // HashMap has long, float and string constants, so entries after them are read at right indexes
+    @Test
+    public void readsHeaderSameAsBcel() throws Exception {
+        for (Class<?> type : Arrays.asList(java.util.HashMap.class, java.util.Map.Entry.class, Thread.class,
+                java.util.concurrent.ConcurrentHashMap.class, String.class)) {
+            ClassFileInfo info = read(type);
+            JavaClass javaClass;
+
+            try (InputStream stream = getClassStream(type)) {
+                javaClass = new ClassParser(stream, type.getName()).parse();
+            }
+
+            assertEquals(javaClass.getClassName(), info.getClassName());
+            assertEquals(javaClass.getSuperclassName(), info.getSuperclassName());
+            assertArrayEquals(javaClass.getInterfaceNames(), info.getInterfaceNames());
+            assertEquals(javaClass.getAccessFlags(), info.getAccessFlags());
+            assertEquals(javaClass.isInterface(), info.isInterface());
+        }
+    }
+
+    @Test
+    public void readsObjectWithoutSuperclass() throws Exception {
+        assertNull(read(Object.class).getSuperclassName());
+    }
+
+    @Test
+    public void readsNestingFromInnerClasses() throws Exception {
+        Runnable anonymous = new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+
+        ClassFileInfo top = read(ClassFileReaderTest.class);
+        ClassFileInfo nested = read(java.util.Map.Entry.class);
+        ClassFileInfo anonymousInfo = read(anonymous.getClass());
+
+        assertFalse(top.isNested());
+        assertTrue(nested.isNested());
+        assertFalse(nested.isAnonymous());
+        assertTrue(anonymousInfo.isNested());
+        assertTrue(anonymousInfo.isAnonymous());
+    }
+
+    @Test
+    public void readsAnnotationFlag() throws Exception {
+        ClassFileInfo info = read(Marker.class);
+
+        assertTrue(info.isAnnotation());
+        assertTrue(info.isInterface());
+    }
+
+    @Test(expected = BadParsingException.class)
+    public void rejectsWrongMagic() throws Exception {
+        ClassFileReader.read(new ByteArrayInputStream(new byte[] {0, 0, 0, 0, 0, 0, 0, 0, 0, 1}));
+    }
+
+    @Test(expected = BadParsingException.class)
+    public void rejectsUnknownConstantTag() throws Exception {
+        byte[] bytes = {(byte)0xCA, (byte)0xFE, (byte)0xBA, (byte)0xBE, 0, 0, 0, 52, 0, 2, 99};
+
+        ClassFileReader.read(new ByteArrayInputStream(bytes));
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ru.objective.jni.utils;
+
+import org.apache.commons.bcel6.classfile.ClassParser;
+import org.apache.commons.bcel6.classfile.Code;
+import org.apache.commons.bcel6.classfile.JavaClass;
+import org.apache.commons.bcel6.classfile.LocalVariableTable;
+import org.apache.commons.bcel6.classfile.Method;
+import org.apache.commons.cli.Options;
+import org.junit.Test;
+import ru.objective.jni.exceptions.BadParsingException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ClassFileStripperTest {
+
+    private static byte[] getClassBytes(Class<?> type) throws Exception {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+
+        try (InputStream stream = ClassLoader.getSystemResourceAsStream(type.getName().replace('.', '/') + ".class")) {
+            int read;
+
+            while ((read = stream.read(buffer)) != -1) {
+                result.write(buffer, 0, read);
+            }
+        }
+
+        return result.toByteArray();
+    }
+
+    private static JavaClass parse(byte[] bytes, Class<?> type) throws Exception {
+        return new ClassParser(new ByteArrayInputStream(bytes), type.getName()).parse();
+    }
+
+    // commons-cli is compiled with local variable tables, HashMap has constants taking two entries
+    @Test
+    public void keepsDeclarationsAndLocalVariables() throws Exception {
+        int localVariableTables = 0;
+
+        for (Class<?> type : Arrays.asList(Options.class, HashMap.class, Runnable.class)) {
+            byte[] bytes = getClassBytes(type);
+            byte[] stripped = ClassFileStripper.strip(new ByteArrayInputStream(bytes));
+
+            JavaClass original = parse(bytes, type);
+            JavaClass parsed = parse(stripped, type);
+
+            assertEquals(original.getClassName(), parsed.getClassName());
+            assertEquals(original.getSuperclassName(), parsed.getSuperclassName());
+            assertArrayEquals(original.getInterfaceNames(), parsed.getInterfaceNames());
+            assertEquals(Arrays.toString(original.getFields()), Arrays.toString(parsed.getFields()));
+            assertEquals(Arrays.toString(original.getAttributes()), Arrays.toString(parsed.getAttributes()));
+
+            Method[] originalMethods = original.getMethods();
+            Method[] methods = parsed.getMethods();
+
+            assertEquals(originalMethods.length, methods.length);
+
+            for (int i = 0; i < methods.length; i++) {
+                // access, signature, throws and attributes other than Code
+                assertEquals(originalMethods[i].toString(), methods[i].toString());
+
+                LocalVariableTable originalTable = originalMethods[i].getLocalVariableTable();
+                LocalVariableTable table = methods[i].getLocalVariableTable();
+
+                if (originalTable == null) {
+                    assertNull(table);
+                } else {
+                    assertEquals(originalTable.toString(), table.toString());
+                    localVariableTables++;
+                }
+
+                Code code = methods[i].getCode();
+
+                if (code != null)
+                    assertEquals(0, code.getCode().length);
+            }
+
+            assertTrue(stripped.length <= bytes.length);
+        }
+
+        assertTrue(localVariableTables > 0);
+    }
+
+    @Test(expected = BadParsingException.class)
+    public void rejectsNonClassFile() throws Exception {
+        ClassFileStripper.strip(new ByteArrayInputStream(new byte[] {1, 2, 3, 4}));
+    }
+}
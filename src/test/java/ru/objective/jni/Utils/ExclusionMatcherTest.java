@@ -0,0 +1,150 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.objective.jni.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ExclusionMatcherTest {
+
+    private static ExclusionMatcher classes(String... excludes) {
+        return new ExclusionMatcher(excludes, null);
+    }
+
+    private static ExclusionMatcher packages(String... excludedPackages) {
+        return new ExclusionMatcher(null, excludedPackages);
+    }
+
+    @Test
+    public void matchesExactClassName() {
+        ExclusionMatcher matcher = classes("java.util.HashMap");
+
+        assertTrue(matcher.isExcluded("java.util.HashMap"));
+        assertFalse(matcher.isExcluded("java.util.HashMap2"));
+        assertFalse(matcher.isExcluded("java.util.Map"));
+    }
+
+    @Test
+    public void matchesArrayByElementType() {
+        assertTrue(classes("java.util.HashMap").isExcluded("java.util.HashMap[][]"));
+    }
+
+    @Test
+    public void matchesPackageAndSubpackagesOnly() {
+        ExclusionMatcher matcher = packages("java.util");
+
+        assertTrue(matcher.isExcluded("java.util.HashMap"));
+        assertTrue(matcher.isExcluded("java.util.concurrent.ConcurrentHashMap"));
+        assertFalse(matcher.isExcluded("java.utilities.Tool"));
+        assertFalse(matcher.isExcluded("java.lang.Object"));
+    }
+
+    @Test
+    public void singleStarStaysInsideNamePart() {
+        ExclusionMatcher matcher = classes("java.*.Hash*");
+
+        assertTrue(matcher.isExcluded("java.util.HashMap"));
+        assertTrue(matcher.isExcluded("java.util.HashSet"));
+        assertFalse(matcher.isExcluded("java.util.concurrent.HashX"));
+        assertFalse(matcher.isExcluded("java.util.TreeMap"));
+    }
+
+    @Test
+    public void doubleStarCrossesNameParts() {
+        ExclusionMatcher matcher = classes("java.**Map");
+
+        assertTrue(matcher.isExcluded("java.util.HashMap"));
+        assertTrue(matcher.isExcluded("java.util.concurrent.ConcurrentHashMap"));
+        assertFalse(matcher.isExcluded("java.util.HashSet"));
+    }
+
+    @Test
+    public void questionMarkMatchesOneChar() {
+        ExclusionMatcher matcher = classes("a.B?");
+
+        assertTrue(matcher.isExcluded("a.B1"));
+        assertFalse(matcher.isExcluded("a.B"));
+        assertFalse(matcher.isExcluded("a.B12"));
+        assertFalse(matcher.isExcluded("a.B.C"));
+    }
+
+    @Test
+    public void dotsOfWildcardRuleAreLiteral() {
+        assertFalse(classes("a.b*").isExcluded("aXbc"));
+    }
+
+    @Test
+    public void matchesRegexAgainstWholeName() {
+        ExclusionMatcher matcher = classes("regex:java\\.util\\..*Map");
+
+        assertTrue(matcher.isExcluded("java.util.HashMap"));
+        assertFalse(matcher.isExcluded("java.util.HashMapEntry"));
+        assertFalse(matcher.isExcluded("xjava.util.HashMap"));
+    }
+
+    @Test
+    public void wildcardPackageExcludesSubpackages() {
+        ExclusionMatcher matcher = packages("java.*", "regex:com\\.ex[a-z]+");
+
+        assertTrue(matcher.isExcluded("java.util.HashMap"));
+        assertTrue(matcher.isExcluded("java.util.concurrent.Future"));
+        assertTrue(matcher.isExcluded("com.example.A"));
+        assertFalse(matcher.isExcluded("javax.Foo"));
+        assertFalse(matcher.isExcluded("com.other.A"));
+    }
+
+    @Test
+    public void combinesAllKindsOfRules() {
+        ExclusionMatcher matcher = new ExclusionMatcher(new String[] {"a.A", "b.*Impl"}, new String[] {"c", "d.**"});
+
+        assertTrue(matcher.isExcluded("a.A"));
+        assertTrue(matcher.isExcluded("b.FooImpl"));
+        assertTrue(matcher.isExcluded("c.x.Y"));
+        assertTrue(matcher.isExcluded("d.x.y.Z"));
+        assertFalse(matcher.isExcluded("a.B"));
+        assertFalse(matcher.isExcluded("e.E"));
+    }
+
+    @Test
+    public void excludesNothingWithoutRules() {
+        assertFalse(new ExclusionMatcher(null, null).isExcluded("java.lang.Object"));
+    }
+
+    @Test
+    public void sharesMatcherPerRuleSet() {
+        ExclusionMatcher first = ExclusionMatcher.forRules(new String[] {"a.A"}, null);
+        ExclusionMatcher second = ExclusionMatcher.forRules(new String[] {"a.A"}, new String[] {"b"});
+
+        // another rule set used in between does not replace matcher of the first one
+        assertSame(first, ExclusionMatcher.forRules(new String[] {"a.A"}, null));
+        assertSame(second, ExclusionMatcher.forRules(new String[] {"a.A"}, new String[] {"b"}));
+        assertNotSame(first, second);
+        assertNotSame(first, ExclusionMatcher.forRules(new String[] {"a.A"}, new String[0]));
+    }
+
+    @Test
+    public void convertsWildcardsToRegex() {
+        assertEquals("\\Qa.\\E[^.]*", ExclusionMatcher.toRegex("a.*"));
+        assertEquals("\\Qa.\\E.*\\Q.B\\E", ExclusionMatcher.toRegex("a.**.B"));
+        assertEquals("x|y", ExclusionMatcher.toRegex("regex:x|y"));
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.objective.jni.utils;
+
+import org.apache.commons.bcel6.classfile.ClassParser;
+import org.apache.commons.bcel6.classfile.Field;
+import org.apache.commons.bcel6.classfile.JavaClass;
+import org.apache.commons.bcel6.classfile.Method;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ru.objective.jni.exceptions.BadParsingException;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MemberRulesTest {
+
+    private static final String LIST = "java.util.ArrayList";
+
+    private static JavaClass arrayList;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        try (InputStream stream = ClassLoader.getSystemResourceAsStream("java/util/ArrayList.class")) {
+            arrayList = new ClassParser(stream, "ArrayList.class").parse();
+        }
+    }
+
+    private static Method method(String name, String signature) {
+        for (Method method : arrayList.getMethods()) {
+            if (method.getName().equals(name) && method.getSignature().equals(signature))
+                return method;
+        }
+
+        throw new AssertionError("No method " + name + signature);
+    }
+
+    private static Field field(String name) {
+        for (Field field : arrayList.getFields()) {
+            if (field.getName().equals(name))
+                return field;
+        }
+
+        throw new AssertionError("No field " + name);
+    }
+
+    private MemberRules load(String... lines) throws Exception {
+        Path path = folder.newFile().toPath();
+
+        Files.write(path, Arrays.asList(lines), StandardCharsets.UTF_8);
+
+        return MemberRules.load(path);
+    }
+
+    private void assertParsingError(String expected, String... lines) throws Exception {
+        try {
+            load(lines);
+            fail("Expected parsing error " + expected);
+        } catch (BadParsingException e) {
+            assertTrue(e.getMessage(), e.getMessage().endsWith(expected));
+        }
+    }
+
+    @Test
+    public void keepsRulesWithoutCommentsAsSource() throws Exception {
+        MemberRules rules = load("# getters only", "", "  include method name=get*  ", "exclude field");
+
+        assertEquals("include method name=get*\nexclude field\n", rules.toString());
+    }
+
+    @Test
+    public void reportsFileAndLineOfInvalidRule() throws Exception {
+        assertParsingError(":3: Unknown action drop, expected include or exclude", "# comment", "", "drop method");
+        assertParsingError(":1: Unknown kind methods, expected method, field or member", "exclude methods");
+        assertParsingError(":1: Expected include or exclude, kind and filters", "exclude");
+        assertParsingError(":2: Expected filter=value instead of name", "exclude field", "exclude method name");
+        assertParsingError(":1: Expected filter=value instead of name=", "exclude method name=");
+        assertParsingError(":1: Unknown filter type, expected class, name, descriptor or visibility", "exclude method type=I");
+        assertParsingError(":1: Unknown visibility internal, expected public, protected, package or private",
+                "exclude method visibility=internal");
+    }
+
+    @Test
+    public void lastMatchingRuleWins() throws Exception {
+        Method size = method("size", "()I");
+        Method get = method("get", "(I)Ljava/lang/Object;");
+
+        MemberRules rules = load("exclude method", "include method name=size");
+
+        assertTrue(rules.isExported(LIST, size));
+        assertFalse(rules.isExported(LIST, get));
+
+        rules = load("include method name=size", "exclude method");
+
+        assertFalse(rules.isExported(LIST, size));
+        assertFalse(rules.isExported(LIST, get));
+    }
+
+    @Test
+    public void includeRuleIsAllowlistOfItsKindOnly() throws Exception {
+        MemberRules rules = load("include method class=java.util.* name=size");
+
+        assertTrue(rules.isExported(LIST, method("size", "()I")));
+        assertFalse(rules.isExported(LIST, method("get", "(I)Ljava/lang/Object;")));
+        // fields have no include rule, so they are still exported
+        assertTrue(rules.isExported(LIST, field("size")));
+        // rule is for another class
+        assertTrue(rules.isExported("java.lang.String", method("get", "(I)Ljava/lang/Object;")));
+    }
+
+    @Test
+    public void memberRuleAppliesToFieldsAndMethods() throws Exception {
+        MemberRules rules = load("exclude member name=size");
+
+        assertFalse(rules.isExported(LIST, method("size", "()I")));
+        assertFalse(rules.isExported(LIST, field("size")));
+        assertTrue(rules.isExported(LIST, method("isEmpty", "()Z")));
+    }
+
+    @Test
+    public void matchesDescriptorVisibilityAndRegex() throws Exception {
+        MemberRules rules = load("exclude method descriptor=(I)*", "exclude field visibility=private",
+                "exclude method name=regex:is[A-Z].*");
+
+        assertFalse(rules.isExported(LIST, method("get", "(I)Ljava/lang/Object;")));
+        assertTrue(rules.isExported(LIST, method("add", "(Ljava/lang/Object;)Z")));
+        assertFalse(rules.isExported(LIST, field("size")));
+        assertFalse(rules.isExported(LIST, method("isEmpty", "()Z")));
+        assertTrue(rules.isExported(LIST, method("size", "()I")));
+    }
+
+    @Test
+    public void namesConstructorsInit() throws Exception {
+        MemberRules rules = load("exclude method name=<init> descriptor=()V");
+
+        assertFalse(rules.isExported(LIST, method("<init>", "()V")));
+        assertTrue(rules.isExported(LIST, method("<init>", "(I)V")));
+    }
+}
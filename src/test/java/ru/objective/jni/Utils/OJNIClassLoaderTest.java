@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ru.objective.jni.utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OJNIClassLoaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String[] classPaths() throws Exception {
+        Path dir = folder.getRoot().toPath().resolve("classes");
+        Files.createDirectories(dir);
+
+        return new String[] {dir.toString()};
+    }
+
+    private void changeClassPath(String classPath) throws Exception {
+        Files.write(folder.getRoot().toPath().resolve(classPath).resolve("A.class"), new byte[] {1, 2, 3});
+    }
+
+    @Test
+    public void keepsSameClassPaths() throws Exception {
+        OJNIClassLoader loader = new OJNIClassLoader();
+        String[] classPaths = classPaths();
+
+        try {
+            assertTrue(loader.setClassPaths(classPaths));
+
+            // not tracked, classpaths are not expected to change during single run
+            changeClassPath(classPaths[0]);
+
+            assertFalse(loader.setClassPaths(classPaths.clone()));
+            assertTrue(loader.setClassPaths(new String[0]));
+        } finally {
+            loader.clear();
+        }
+    }
+
+    @Test
+    public void reloadsChangedClassPathsWhenTracked() throws Exception {
+        OJNIClassLoader loader = new OJNIClassLoader();
+        loader.setTrackClassPaths(true);
+
+        String[] classPaths = classPaths();
+
+        try {
+            assertTrue(loader.setClassPaths(classPaths));
+            assertFalse(loader.setClassPaths(classPaths));
+
+            changeClassPath(classPaths[0]);
+
+            assertTrue(loader.setClassPaths(classPaths));
+            assertFalse(loader.setClassPaths(classPaths));
+        } finally {
+            loader.clear();
+        }
+    }
+}
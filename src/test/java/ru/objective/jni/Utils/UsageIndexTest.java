@@ -0,0 +1,100 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.objective.jni.utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class UsageIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readsKeywordsOfSelectorWithArguments() {
+        assertEquals(Arrays.asList("addOption", "hasArg", "description"), UsageIndex.getSelectorKeywords(
+                "- (OJOptions *)addOption:(OJString *)opt hasArg:(bool)hasArg description:(OJString *)description ;"));
+    }
+
+    @Test
+    public void readsSelectorWithoutArguments() {
+        assertEquals(Collections.singletonList("getOptions"), UsageIndex.getSelectorKeywords("- (id <OJCollection>)getOptions;"));
+        assertEquals(Collections.singletonList("init"), UsageIndex.getSelectorKeywords("- (instancetype)init"));
+    }
+
+    @Test
+    public void skipsProtocolsOfArgumentTypes() {
+        assertEquals(Arrays.asList("putAll", "withFlag"), UsageIndex.getSelectorKeywords(
+                "+ (void)putAll:(id <OJMap>)map withFlag:(NSArray <id <OJList>> *)flags ;"));
+    }
+
+    private UsageIndex scan(String source, Path outputDir) throws Exception {
+        Path dir = folder.getRoot().toPath();
+
+        Files.write(dir.resolve("App.m"), source.getBytes(StandardCharsets.UTF_8));
+
+        UsageIndex index = new UsageIndex();
+        index.scan(dir.toString(), outputDir);
+
+        return index;
+    }
+
+    @Test
+    public void usesMemberWhenAllKeywordsAreReferenced() throws Exception {
+        UsageIndex index = scan("[options addOption:@\"a\" hasArg:YES description:nil]; [options getOptions];", null);
+
+        assertTrue(index.isMemberUsed("- (OJOptions *)addOption:(OJString *)opt hasArg:(bool)hasArg description:(OJString *)d ;"));
+        assertTrue(index.isMemberUsed("- (id <OJCollection>)getOptions;"));
+        assertFalse(index.isMemberUsed("- (OJOptions *)addOption:(OJString *)opt longOpt:(OJString *)longOpt ;"));
+        // final field has no setter
+        assertTrue(index.isMemberUsed("", "- (id <OJCollection>)getOptions;"));
+        assertFalse(index.isMemberUsed(""));
+    }
+
+    @Test
+    public void usesClassReferencedByWrapperName() throws Exception {
+        UsageIndex index = scan("#import \"OJOptions.h\"\nOJOptions *options; OJParserFactory *factory;", null);
+
+        assertTrue(index.isClassUsed("OJOptions"));
+        assertFalse(index.isClassUsed("OJParser"));
+        assertEquals("Usage: 1 of 2 requested classes referenced, 0 of 0 members kept (0.0% pruned)", index.getSummary());
+    }
+
+    @Test
+    public void skipsOutputDir() throws Exception {
+        Path output = folder.newFolder("out").toPath();
+
+        Files.write(output.resolve("OJParser.h"), "@interface OJParser".getBytes(StandardCharsets.UTF_8));
+        Files.write(output.resolve("README.txt"), "OJOptions".getBytes(StandardCharsets.UTF_8));
+
+        UsageIndex index = scan("OJOptions *options;", output);
+
+        assertEquals(1, index.getFileCount());
+        assertFalse(index.isClassUsed("OJParser"));
+    }
+}
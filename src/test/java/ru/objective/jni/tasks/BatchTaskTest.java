@@ -0,0 +1,71 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.objective.jni.tasks;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class BatchTaskTest {
+
+    @Test
+    public void splitsByAnyWhitespace() {
+        assertArrayEquals(new String[] {"--prefix", "OJ", "--output", "out"},
+                BatchTask.tokenize("  --prefix\tOJ   --output out  "));
+        assertArrayEquals(new String[0], BatchTask.tokenize("   "));
+    }
+
+    @Test
+    public void keepsQuotedValueTogether() {
+        assertArrayEquals(new String[] {"--output", "my out", "--exclude", "a.B"},
+                BatchTask.tokenize("--output \"my out\" --exclude 'a.B'"));
+    }
+
+    @Test
+    public void joinsQuotedPartWithAdjacentChars() {
+        assertArrayEquals(new String[] {"--output=my out/dir"}, BatchTask.tokenize("--output=\"my out\"/dir"));
+    }
+
+    @Test
+    public void keepsOtherQuoteInsideQuotes() {
+        assertArrayEquals(new String[] {"it's", "say \"hi\""}, BatchTask.tokenize("\"it's\" 'say \"hi\"'"));
+    }
+
+    @Test
+    public void keepsEmptyQuotedValue() {
+        assertArrayEquals(new String[] {"--prefix", ""}, BatchTask.tokenize("--prefix ''"));
+    }
+
+    @Test
+    public void rejectsUnclosedQuote() {
+        try {
+            BatchTask.tokenize("--output \"my out");
+            fail("Expected unclosed quote error");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Unclosed \" quote", e.getMessage());
+        }
+
+        try {
+            BatchTask.tokenize("--exclude 'a.B");
+            fail("Expected unclosed quote error");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Unclosed ' quote", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.objective.jni.tasks;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DaemonProtocolTest {
+
+    private static final int PORT = 47311;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String userHome;
+
+    @Before
+    public void setUp() {
+        userHome = System.getProperty("user.home");
+        System.setProperty("user.home", folder.getRoot().getPath());
+    }
+
+    @After
+    public void tearDown() {
+        System.setProperty("user.home", userHome);
+    }
+
+    private static DataInputStream send(String token, String... arguments) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DaemonProtocol.writeRequest(new DataOutputStream(bytes), token, arguments);
+
+        return new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+    @Test
+    public void acceptsRequestWithDaemonToken() throws Exception {
+        String token = DaemonProtocol.createToken(PORT);
+
+        assertEquals(token, DaemonProtocol.readToken(PORT));
+
+        DataInputStream input = send(DaemonProtocol.readToken(PORT), "--prefix", "OJ");
+
+        assertTrue(DaemonProtocol.readToken(input, token));
+        assertArrayEquals(new String[] {"--prefix", "OJ"}, DaemonProtocol.readRequest(input));
+    }
+
+    @Test
+    public void rejectsWrongToken() throws Exception {
+        String token = DaemonProtocol.createToken(PORT);
+
+        assertFalse(DaemonProtocol.readToken(send(token.substring(1)), token));
+        assertFalse(DaemonProtocol.readToken(send(""), token));
+    }
+
+    @Test
+    public void createsNewOwnerOnlyToken() throws Exception {
+        String first = DaemonProtocol.createToken(PORT);
+        String second = DaemonProtocol.createToken(PORT);
+        Path path = DaemonProtocol.getTokenPath(PORT);
+
+        assertNotEquals(first, second);
+        assertEquals(64, second.length());
+
+        if (path.getFileSystem().supportedFileAttributeViews().contains("posix"))
+            assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(path)));
+
+        DaemonProtocol.deleteToken(PORT);
+
+        assertFalse(Files.exists(path));
+    }
+
+    @Test(expected = java.io.IOException.class)
+    public void failsWithoutDaemonToken() throws Exception {
+        DaemonProtocol.readToken(PORT);
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.objective.jni.tasks;
+
+import org.apache.commons.bcel6.classfile.JavaClass;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ru.objective.jni.utils.OJNIClassLoader;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GenerationManifestTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path output;
+
+    @Before
+    public void setUp() throws Exception {
+        output = folder.getRoot().toPath();
+        OJNIClassLoader.getInstance().setClassPaths(new String[0]);
+    }
+
+    private GenerationManifest load(String prefix) throws Exception {
+        return GenerationManifest.load(output.toString(), prefix, null, null, null);
+    }
+
+    private void save(String className, String fingerprint, String... outputs) throws Exception {
+        GenerationManifest manifest = load("OJ");
+
+        for (String outputFile : outputs) {
+            Files.write(output.resolve(outputFile), Collections.singletonList(className), StandardCharsets.UTF_8);
+        }
+
+        manifest.put(className, new GenerationManifest.Entry(fingerprint, outputs, new String[] {"java.lang.Object"}));
+        manifest.save();
+    }
+
+    @Test
+    public void reusesEntryWithSameFingerprint() throws Exception {
+        save("a.A", "f1", "OJA.h", "OJA.m");
+
+        GenerationManifest manifest = load("OJ");
+        GenerationManifest.Entry entry = manifest.getReusableEntry("a.A", "f1");
+
+        assertNotNull(entry);
+        assertEquals(2, entry.outputs.length);
+
+        manifest.put("a.A", entry);
+
+        assertEquals(1, manifest.getReusedCount());
+        assertEquals(0, manifest.getBuiltCount());
+    }
+
+    @Test
+    public void rebuildsChangedClass() throws Exception {
+        save("a.A", "f1", "OJA.h");
+
+        GenerationManifest manifest = load("OJ");
+
+        assertNull(manifest.getReusableEntry("a.A", "f2"));
+        assertNull(manifest.getReusableEntry("a.B", "f1"));
+
+        manifest.put("a.A", new GenerationManifest.Entry("f2", new String[] {"OJA.h"}, new String[0]));
+
+        assertEquals(0, manifest.getReusedCount());
+        assertEquals(1, manifest.getBuiltCount());
+    }
+
+    @Test
+    public void rebuildsClassWithMissingOutput() throws Exception {
+        save("a.A", "f1", "OJA.h", "OJA.m");
+
+        Files.delete(output.resolve("OJA.m"));
+
+        assertNull(load("OJ").getReusableEntry("a.A", "f1"));
+    }
+
+    @Test
+    public void reportsOutputsNotProducedAnymore() throws Exception {
+        save("a.A", "f1", "OJA.h", "OJA.m");
+
+        GenerationManifest manifest = load("OJ");
+        manifest.put("a.A", new GenerationManifest.Entry("f2", new String[] {"OJA.h"}, new String[0]));
+
+        Collection<Path> stale = manifest.getStaleOutputs();
+
+        assertEquals(1, stale.size());
+        assertTrue(stale.contains(output.resolve("OJA.m")));
+    }
+
+    @Test
+    public void fingerprintDependsOnOptions() throws Exception {
+        JavaClass javaClass = OJNIClassLoader.getInstance().loadClass("java.lang.Runnable");
+
+        String fingerprint = load("OJ").fingerprint(javaClass);
+
+        assertEquals(fingerprint, load("OJ").fingerprint(javaClass));
+        assertNotEquals(fingerprint, load("AS").fingerprint(javaClass));
+        assertNotEquals(fingerprint, GenerationManifest.load(output.toString(), "OJ",
+                new String[] {"java.lang.Thread"}, null, null).fingerprint(javaClass));
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.objective.jni.tasks;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OutputArchiveTest {
+
+    private static final String LONG_DIR = "org/example/very/long/package/name/which/does/not/fit/into/tar/header/name/field";
+    private static final String LONG_NAME = repeat('x', 120) + ".h";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+
+        return new String(chars);
+    }
+
+    private Path write(String fileName, String... names) throws IOException {
+        Path path = folder.getRoot().toPath().resolve(fileName);
+        OutputArchive archive = OutputArchive.create(path);
+
+        for (String name : names) {
+            byte[] content = ("content of " + name).getBytes(StandardCharsets.UTF_8);
+            // longer buffer than content, as OutputWriter passes it
+            archive.putEntry(name, Arrays.copyOf(content, content.length + 10), content.length);
+        }
+
+        archive.commit();
+
+        return path;
+    }
+
+    @Test
+    public void writesSameArchiveForAnyEntryOrder() throws Exception {
+        for (String extension : new String[] {".zip", ".tar", ".tar.gz"}) {
+            byte[] first = Files.readAllBytes(write("first" + extension, "b/B.h", "a/A.h", "a/A.m"));
+            byte[] second = Files.readAllBytes(write("second" + extension, "a/A.m", "b/B.h", "a/A.h"));
+
+            assertArrayEquals(extension, first, second);
+        }
+    }
+
+    @Test
+    public void writesZipEntriesSortedByName() throws Exception {
+        Path path = write("out.zip", "b/B.h", "a/A.m", "a/A.h");
+
+        ArrayList<String> names = new ArrayList<>();
+
+        try (ZipInputStream zip = new ZipInputStream(Files.newInputStream(path), StandardCharsets.UTF_8)) {
+            ZipEntry entry;
+
+            while ((entry = zip.getNextEntry()) != null) {
+                names.add(entry.getName());
+                assertEquals("content of " + entry.getName(), new String(readAll(zip), StandardCharsets.UTF_8));
+            }
+        }
+
+        assertEquals(Arrays.asList("a/A.h", "a/A.m", "b/B.h"), names);
+    }
+
+    @Test
+    public void writesTarNamesWithPrefixAndPaxHeaders() throws Exception {
+        String splitName = LONG_DIR + "/Wrapper.h";
+        String longName = "a/" + LONG_NAME;
+        String unicodeName = "a/\u041e\u0431\u0451\u0440\u0442\u043a\u0430.h";
+
+        Map<String, String> entries = readTar(Files.readAllBytes(write("out.tar", "a/A.h", splitName, longName, unicodeName)));
+
+        assertEquals(new ArrayList<>(Arrays.asList("a/A.h", longName, unicodeName, splitName)),
+                new ArrayList<>(entries.keySet()));
+
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            assertEquals("content of " + entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Test
+    public void writesGzipTar() throws Exception {
+        Path path = write("out.tgz", "a/A.h");
+
+        try (InputStream stream = new GZIPInputStream(Files.newInputStream(path))) {
+            Map<String, String> entries = readTar(readAll(stream));
+
+            assertEquals("content of a/A.h", entries.get("a/A.h"));
+        }
+    }
+
+    @Test
+    public void discardKeepsPreviousArchive() throws Exception {
+        Path path = write("out.zip", "a/A.h");
+        byte[] previous = Files.readAllBytes(path);
+
+        OutputArchive archive = OutputArchive.create(path);
+        archive.putEntry("b/B.h", new byte[] {1}, 1);
+        archive.discard();
+
+        assertArrayEquals(previous, Files.readAllBytes(path));
+        assertFalse(Files.exists(path.resolveSibling("out.zip.tmp")));
+        assertFalse(Files.exists(path.resolveSibling("out.zip.entries.tmp")));
+    }
+
+    @Test
+    public void spillsEntriesToDiskUntilCommit() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("out.tar");
+        Path spill = path.resolveSibling("out.tar.entries.tmp");
+
+        byte[] big = new byte[200000];
+        Arrays.fill(big, (byte)'b');
+
+        OutputArchive archive = OutputArchive.create(path);
+        archive.putEntry("b/Big.h", big, big.length);
+        archive.putEntry("a/A.h", "small".getBytes(StandardCharsets.UTF_8), 5);
+
+        assertEquals(big.length + 5, Files.size(spill));
+        assertFalse(Files.exists(path));
+
+        archive.commit();
+
+        Map<String, String> entries = readTar(Files.readAllBytes(path));
+
+        assertEquals("small", entries.get("a/A.h"));
+        assertEquals(new String(big, StandardCharsets.UTF_8), entries.get("b/Big.h"));
+        assertFalse(Files.exists(spill));
+    }
+
+    @Test
+    public void writesEmptyArchive() throws Exception {
+        Path path = write("out.tar");
+
+        assertEquals(1024, Files.size(path));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsDuplicateEntries() throws Exception {
+        write("out.zip", "a/A.h", "a/A.h");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownExtension() throws Exception {
+        OutputArchive.create(folder.getRoot().toPath().resolve("out.rar"));
+    }
+
+    // name -> content, checks header checksums, pax records and end of archive
+    private static Map<String, String> readTar(byte[] tar) {
+        LinkedHashMap<String, String> result = new LinkedHashMap<>();
+        String paxPath = null;
+        int offset = 0;
+
+        while (true) {
+            byte[] header = Arrays.copyOfRange(tar, offset, offset + 512);
+
+            if (isZero(header)) {
+                assertTrue(isZero(Arrays.copyOfRange(tar, offset + 512, offset + 1024)));
+                assertEquals(tar.length, offset + 1024);
+
+                return result;
+            }
+
+            assertEquals(parseOctal(header, 148, 8), getChecksum(header));
+            assertEquals("ustar", getString(header, 257, 5));
+
+            int size = (int)parseOctal(header, 124, 12);
+            byte[] content = Arrays.copyOfRange(tar, offset + 512, offset + 512 + size);
+            char type = (char)header[156];
+
+            offset += 512 + (size + 511) / 512 * 512;
+
+            if (type == 'x') {
+                String record = new String(content, StandardCharsets.UTF_8);
+                int space = record.indexOf(' ');
+
+                assertEquals(content.length, Integer.parseInt(record.substring(0, space)));
+                assertTrue(record.startsWith("path=", space + 1));
+                assertTrue(record.endsWith("\n"));
+
+                paxPath = record.substring(space + 1 + "path=".length(), record.length() - 1);
+                continue;
+            }
+
+            assertEquals('0', type);
+
+            String name = getString(header, 0, 100);
+            String prefix = getString(header, 345, 155);
+
+            if (paxPath != null) {
+                assertTrue(name.length() <= 100);
+                name = paxPath;
+                paxPath = null;
+            } else if (!prefix.isEmpty()) {
+                name = prefix + "/" + name;
+            }
+
+            result.put(name, new String(content, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static boolean isZero(byte[] block) {
+        for (byte b : block) {
+            if (b != 0)
+                return false;
+        }
+
+        return true;
+    }
+
+    private static long getChecksum(byte[] header) {
+        long result = 0;
+
+        for (int i = 0; i < header.length; i++) {
+            result += (i >= 148 && i < 156 ? ' ' : header[i] & 0xff);
+        }
+
+        return result;
+    }
+
+    private static long parseOctal(byte[] header, int offset, int length) {
+        String value = getString(header, offset, length).trim();
+
+        return Long.parseLong(value, 8);
+    }
+
+    private static String getString(byte[] header, int offset, int length) {
+        int end = offset;
+
+        while (end < offset + length && header[end] != 0)
+            end++;
+
+        return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readAll(InputStream stream) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+
+        while ((read = stream.read(buffer)) != -1) {
+            result.write(buffer, 0, read);
+        }
+
+        return result.toByteArray();
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.objective.jni.tasks;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OutputWriterTest {
+
+    private static final FileTime OLD_TIME = FileTime.fromMillis(1000000000000L);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path output;
+
+    @Before
+    public void setUp() {
+        output = folder.getRoot().toPath();
+    }
+
+    private void writeExisting(String relativePath, String content) throws IOException {
+        Path path = output.resolve(relativePath);
+
+        Files.createDirectories(path.getParent());
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(path, OLD_TIME);
+    }
+
+    private String read(String relativePath) throws IOException {
+        return new String(Files.readAllBytes(output.resolve(relativePath)), StandardCharsets.UTF_8);
+    }
+
+    private static void write(OutputWriter writer, String relativePath, String content) throws IOException {
+        try (Writer stream = writer.open(relativePath, StandardCharsets.UTF_8)) {
+            stream.write(content);
+        }
+    }
+
+    private void assertNoTemporaryFiles() {
+        for (File file : folder.getRoot().listFiles()) {
+            assertFalse(file.getName(), file.getName().endsWith(".tmp"));
+        }
+    }
+
+    @Test
+    public void writesNewFilesIntoMissingDirs() throws Exception {
+        for (boolean async : new boolean[] {false, true}) {
+            OutputWriter writer = new OutputWriter(output.toString(), async);
+
+            write(writer, "a/b/" + async + ".h", "content");
+            writer.finish();
+
+            assertEquals("content", read("a/b/" + async + ".h"));
+            assertEquals(1, writer.getWrittenCount());
+        }
+    }
+
+    @Test
+    public void keepsUnchangedFileUntouched() throws Exception {
+        writeExisting("A.h", "same content");
+
+        OutputWriter writer = new OutputWriter(output.toString(), true);
+
+        write(writer, "A.h", "same content");
+        writer.finish();
+
+        assertEquals(OLD_TIME, Files.getLastModifiedTime(output.resolve("A.h")));
+        assertEquals(0, writer.getWrittenCount());
+        assertEquals(1, writer.getSkippedCount());
+    }
+
+    @Test
+    public void replacesChangedFiles() throws Exception {
+        writeExisting("Shorter.h", "0123456789");
+        writeExisting("Longer.h", "0123");
+        writeExisting("Middle.h", "0123456789");
+
+        OutputWriter writer = new OutputWriter(output.toString(), false);
+
+        write(writer, "Shorter.h", "01234");
+        write(writer, "Longer.h", "0123456789");
+        write(writer, "Middle.h", "01234x6789");
+
+        // nothing is replaced before finish
+        assertEquals("0123456789", read("Shorter.h"));
+
+        writer.finish();
+
+        assertEquals("01234", read("Shorter.h"));
+        assertEquals("0123456789", read("Longer.h"));
+        assertEquals("01234x6789", read("Middle.h"));
+        assertEquals(3, writer.getWrittenCount());
+        assertNoTemporaryFiles();
+    }
+
+    @Test
+    public void writesNewFilesInPlace() throws Exception {
+        OutputWriter writer = new OutputWriter(output.toString(), false);
+
+        write(writer, "A.h", "new file");
+
+        // no temporary file to move, file is in place before finish
+        assertEquals("new file", read("A.h"));
+        assertNoTemporaryFiles();
+
+        writer.finish();
+
+        assertEquals("new file", read("A.h"));
+        assertEquals(1, writer.getWrittenCount());
+    }
+
+    @Test
+    public void removesTemporaryFilesLeftByKilledRun() throws Exception {
+        writeExisting("A.h", "previous");
+        writeExisting(".A.h.3.tmp", "prev");
+        writeExisting(".hidden.tmp", "not ours");
+
+        OutputWriter writer = new OutputWriter(output.toString(), false);
+
+        write(writer, "A.h", "previous");
+        writer.finish();
+
+        assertFalse(Files.exists(output.resolve(".A.h.3.tmp")));
+        assertTrue(Files.exists(output.resolve(".hidden.tmp")));
+    }
+
+    @Test
+    public void comparesContentLongerThanBuffer() throws Exception {
+        char[] chars = new char[100000];
+        Arrays.fill(chars, 'a');
+
+        String content = new String(chars);
+        writeExisting("Big.h", content);
+
+        chars[70000] = 'b';
+
+        OutputWriter writer = new OutputWriter(output.toString(), true);
+
+        write(writer, "Big.h", new String(chars));
+        writer.finish();
+
+        assertArrayEquals(chars, read("Big.h").toCharArray());
+    }
+
+    @Test
+    public void abortKeepsPreviousFiles() throws Exception {
+        writeExisting("A.h", "previous");
+
+        for (boolean async : new boolean[] {false, true}) {
+            OutputWriter writer = new OutputWriter(output.toString(), async);
+
+            // closed by try-with-resources although generation failed in the middle
+            try (Writer stream = writer.open("A.h", StandardCharsets.UTF_8)) {
+                stream.write("new");
+                stream.flush();
+            }
+
+            write(writer, "B.h", "new file");
+            writer.abort();
+
+            assertEquals("previous", read("A.h"));
+            assertFalse(Files.exists(output.resolve("B.h")));
+            assertNoTemporaryFiles();
+        }
+    }
+
+    @Test
+    public void writesBytes() throws Exception {
+        OutputWriter writer = new OutputWriter(output.toString(), false);
+
+        writer.write("LICENSE", new byte[] {1, 2, 3});
+        writer.finish();
+
+        assertArrayEquals(new byte[] {1, 2, 3}, Files.readAllBytes(output.resolve("LICENSE")));
+    }
+
+    @Test
+    public void deletesFiles() throws Exception {
+        writeExisting("Old.m", "old");
+
+        OutputWriter writer = new OutputWriter(output.toString(), false);
+
+        assertTrue(writer.delete("Old.m"));
+        assertFalse(writer.delete("Missing.m"));
+        assertEquals(1, writer.getDeletedCount());
+    }
+}
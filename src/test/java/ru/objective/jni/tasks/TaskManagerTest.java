@@ -0,0 +1,78 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package ru.objective.jni.tasks;
+
+import org.junit.Test;
+import ru.objective.jni.argparser.ArgumentParser;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class TaskManagerTest {
+
+    // options are validated before anything is loaded or written
+    private static void assertRejected(String message, String... args) throws Exception {
+        try {
+            new TaskManager().run(new ArgumentParser(args).parse());
+            fail("Accepted " + Arrays.toString(args));
+        } catch (IllegalArgumentException e) {
+            assertEquals(message, e.getMessage());
+        }
+    }
+
+    @Test
+    public void rejectsInvalidThreads() throws Exception {
+        for (String value : new String[] {"0", "-1", "four", "99999999999"}) {
+            assertRejected("--threads expects positive number", "--threads", value, "--class", "java.lang.Object");
+        }
+    }
+
+    @Test
+    public void rejectsInvalidAmalgamationSize() throws Exception {
+        for (String value : new String[] {"0", "-5", "packages", "99999999999"}) {
+            assertRejected("--amalgamate expects package or positive number of classes",
+                    "--amalgamate", value, "--class", "java.lang.Object");
+        }
+    }
+
+    @Test
+    public void rejectsInvalidMaxDepth() throws Exception {
+        for (String value : new String[] {"-1", "deep", "99999999999"}) {
+            assertRejected("--max-depth expects non-negative number", "--max-depth", value, "--class", "java.lang.Object");
+        }
+    }
+
+    // 2^44 megabytes used to overflow into 0 bytes
+    @Test
+    public void rejectsInvalidClassCacheSize() throws Exception {
+        for (String value : new String[] {"0", "-1", "17592186044416", "large"}) {
+            assertRejected("--class-cache expects positive number of megabytes",
+                    "--class-cache", value, "--class", "java.lang.Object");
+        }
+    }
+
+    @Test
+    public void rejectsInvalidPorts() throws Exception {
+        for (String value : new String[] {"0", "65536", "port"}) {
+            assertRejected("--daemon expects port number", "--daemon", value);
+            assertRejected("--connect expects port number", "--connect", value, "--class", "java.lang.Object");
+        }
+    }
+}
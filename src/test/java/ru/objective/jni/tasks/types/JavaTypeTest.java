@@ -0,0 +1,129 @@
+/*
+ * Copyright 2016 Alexander Shitikov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ru.objective.jni.tasks.types;
+
+import org.apache.commons.bcel6.generic.Type;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class JavaTypeTest {
+
+    @Test
+    public void parsesObjectArray() {
+        JavaType type = JavaType.forDescriptor("[[Ljava/lang/String;");
+
+        assertEquals("java.lang.String", type.getBasicName());
+        assertEquals("String", type.getShortName());
+        assertEquals(2, type.getDimensions());
+        assertTrue(type.isArray());
+        assertFalse(type.isPrimitive());
+        assertEquals("java.lang.String[][]", type.toString());
+    }
+
+    @Test
+    public void parsesPrimitives() {
+        JavaType type = JavaType.forDescriptor("J");
+
+        assertEquals("long", type.getBasicName());
+        assertTrue(type.isPrimitive());
+        assertTrue(type.isWide());
+        assertFalse(type.isArray());
+
+        assertTrue(JavaType.forDescriptor("V").isVoid());
+        assertFalse(JavaType.forDescriptor("[J").isWide());
+        assertTrue(JavaType.forDescriptor("[I").isPrimitive());
+    }
+
+    @Test
+    public void printsSameAsBcel() {
+        for (String descriptor : new String[] {"I", "Z", "[B", "[[D", "Ljava/util/Map$Entry;", "[Ljava/lang/Object;"}) {
+            assertEquals(Type.getType(descriptor).toString(), JavaType.forDescriptor(descriptor).toString());
+        }
+    }
+
+    @Test
+    public void internsTypes() {
+        assertSame(JavaType.forDescriptor("Ljava/lang/Object;"), JavaType.forDescriptor(new String("Ljava/lang/Object;")));
+        assertSame(JavaType.forDescriptor("I"), JavaType.forDescriptor("(I)V", 1, 2));
+    }
+
+    @Test
+    public void clearsInternedTypes() {
+        JavaType type = JavaType.forDescriptor("Ljava/lang/Runnable;");
+        MethodSignature signature = MethodSignature.forSignature("(Ljava/lang/Runnable;)V");
+
+        JavaType.clearInterned();
+        MethodSignature.clearInterned();
+
+        assertNotSame(type, JavaType.forDescriptor("Ljava/lang/Runnable;"));
+        assertNotSame(signature, MethodSignature.forSignature("(Ljava/lang/Runnable;)V"));
+        assertEquals(type.toString(), JavaType.forDescriptor("Ljava/lang/Runnable;").toString());
+    }
+
+    @Test
+    public void findsDescriptorEnd() {
+        String signature = "([[ILjava/lang/String;J)V";
+
+        assertEquals(4, JavaType.getDescriptorEnd(signature, 1));
+        assertEquals(22, JavaType.getDescriptorEnd(signature, 4));
+        assertEquals(23, JavaType.getDescriptorEnd(signature, 22));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownTag() {
+        JavaType.forDescriptor("X");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnterminatedClass() {
+        JavaType.forDescriptor("Ljava/lang/Object");
+    }
+
+    @Test
+    public void parsesMethodSignature() {
+        MethodSignature signature = MethodSignature.forSignature("([[ILjava/lang/String;J)Ljava/util/List;");
+
+        assertEquals("java.util.List", signature.getReturnType().toString());
+        assertEquals(3, signature.getArgumentTypes().length);
+        assertSame(JavaType.forDescriptor("[[I"), signature.getArgumentTypes()[0]);
+        assertSame(JavaType.forDescriptor("Ljava/lang/String;"), signature.getArgumentTypes()[1]);
+        assertSame(JavaType.forDescriptor("J"), signature.getArgumentTypes()[2]);
+    }
+
+    @Test
+    public void parsesSignatureWithoutArguments() {
+        MethodSignature signature = MethodSignature.forSignature("()V");
+
+        assertEquals(0, signature.getArgumentTypes().length);
+        assertTrue(signature.getReturnType().isVoid());
+    }
+
+    @Test
+    public void internsSignatures() {
+        assertSame(MethodSignature.forSignature("(I)V"), MethodSignature.forSignature(new String("(I)V")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsSignatureWithoutArguments() {
+        MethodSignature.forSignature("V");
+    }
+}